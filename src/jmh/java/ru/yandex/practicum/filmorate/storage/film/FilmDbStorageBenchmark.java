@@ -0,0 +1,148 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.util.unit.DataSize;
+import ru.yandex.practicum.filmorate.controller.params.SearchBy;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки основных запросов {@link FilmDbStorage} и {@link FilmRowMapper} на синтетических данных.
+ * <p>
+ * Запуск: {@code mvn -Pbenchmark test-compile exec:exec}, размер данных меняется параметрами JMH,
+ * например {@code -Djmh.args="-p films=50000 -p users=20000"}. Профилировщик gc включён в профиле
+ * maven, поэтому кроме пропускной способности в отчёт попадает {@code gc.alloc.rate.norm} —
+ * количество байт, выделяемых на одну операцию.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmDbStorageBenchmark {
+
+    private static final Set<SearchBy> SEARCH_BY_TITLE_AND_DIRECTOR = EnumSet.of(SearchBy.TITLE, SearchBy.DIRECTOR);
+
+    @Param("10000")
+    private int films;
+
+    @Param("5000")
+    private int users;
+
+    @Param("10")
+    private int genres;
+
+    @Param("500")
+    private int directors;
+
+    @Param("20")
+    private int likesPerUser;
+
+    @Param("1.0")
+    private double zipfExponent;
+
+    @Param("ber")
+    private String searchQuery;
+
+    private HikariDataSource dataSource;
+    private FilmDbStorage storage;
+    private UserLikesBitmapCache likesCache;
+    private FilmCardCache filmCardCache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("password");
+
+        new SyntheticDataSet(films, users, genres, directors, likesPerUser, zipfExponent, 42).populate(dataSource);
+        storage = new FilmDbStorage(new NamedParameterJdbcTemplate(dataSource),
+                new FilmRowMapper(new MpaDbStorage(new JdbcTemplate(dataSource))),
+                new GenreDbStorage(new JdbcTemplate(dataSource)));
+        likesCache = new UserLikesBitmapCache(new JdbcTemplate(dataSource), 100_000);
+        FilmPopularityIndex popularityIndex = new FilmPopularityIndex(new JdbcTemplate(dataSource));
+        popularityIndex.rebuild();
+        filmCardCache = new FilmCardCache(storage, popularityIndex, DataSize.ofMegabytes(64));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public List<Film> findAll() {
+        return storage.findAll();
+    }
+
+    @Benchmark
+    public Film findById() {
+        return storage.findById(randomId(films));
+    }
+
+    /**
+     * {@link #findById()} через {@link FilmCardCache}, как в FilmService: после прогрева все карточки в кеше.
+     */
+    @Benchmark
+    public Film findByIdFromCache() {
+        return filmCardCache.get(randomId(films));
+    }
+
+    @Benchmark
+    public List<Film> findPopularFilms() {
+        return storage.findPopularFilms(10, null, null);
+    }
+
+    @Benchmark
+    public List<Film> searchFilm() {
+        return storage.searchFilm(searchQuery, SEARCH_BY_TITLE_AND_DIRECTOR);
+    }
+
+    @Benchmark
+    public List<Film> getCommonFilms() {
+        return storage.getCommonFilms(randomId(users), randomId(users));
+    }
+
+    /**
+     * Общие фильмы через пересечение битовых карт {@link UserLikesBitmapCache}, как в FilmService.
+     */
+    @Benchmark
+    public List<Film> getCommonFilmsFromBitmaps() {
+        int[] filmIds = likesCache.commonFilms(randomId(users), randomId(users));
+        return storage.findAllByIds(Arrays.stream(filmIds).boxed().toList());
+    }
+
+    @Benchmark
+    public List<Film> getRecommendations() {
+        return storage.getRecommendations(randomId(users));
+    }
+
+    private static int randomId(int bound) {
+        return ThreadLocalRandom.current().nextInt(bound) + 1;
+    }
+}
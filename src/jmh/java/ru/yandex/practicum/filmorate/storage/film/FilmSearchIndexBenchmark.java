@@ -0,0 +1,73 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.FilmSuggestion;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время ответа {@link FilmSearchIndex}: поиск по подстроке и подсказки по префиксу.
+ * Режим SampleTime, поэтому в отчёте есть перцентили, в том числе p0.99.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmSearchIndexBenchmark {
+
+    @Param("10000")
+    private int films;
+
+    @Param("500")
+    private int directors;
+
+    @Param({"k", "ber", "marlo"})
+    private String query;
+
+    private HikariDataSource dataSource;
+    private FilmSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:search;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("password");
+
+        new SyntheticDataSet(films, 100, 10, directors, 5, 1.0, 42).populate(dataSource);
+        index = new FilmSearchIndex(new JdbcTemplate(dataSource));
+        index.rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public List<FilmSuggestion> suggest() {
+        return index.suggest(query, 10);
+    }
+
+    @Benchmark
+    public List<FilmSearchIndex.Match> search() {
+        return index.search(query, true, true);
+    }
+}
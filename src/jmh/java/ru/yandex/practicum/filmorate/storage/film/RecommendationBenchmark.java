@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рекомендации на запрос: SQL-запрос {@link FilmDbStorage#getRecommendations(Integer)} против
+ * {@link UserSimilarityModel}, с загрузкой карточек фильмов и без неё.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecommendationBenchmark {
+
+    @Param("10000")
+    private int films;
+
+    @Param("5000")
+    private int users;
+
+    @Param("20")
+    private int likesPerUser;
+
+    @Param("1.0")
+    private double zipfExponent;
+
+    private HikariDataSource dataSource;
+    private FilmDbStorage storage;
+    private UserSimilarityModel model;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:recommendations;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("password");
+
+        new SyntheticDataSet(films, users, 10, 500, likesPerUser, zipfExponent, 42).populate(dataSource);
+        storage = new FilmDbStorage(new NamedParameterJdbcTemplate(dataSource),
+                new FilmRowMapper(new MpaDbStorage(new JdbcTemplate(dataSource))),
+                new GenreDbStorage(new JdbcTemplate(dataSource)));
+        model = new UserSimilarityModel(new JdbcTemplate(dataSource), 10, Duration.ofMinutes(1), 0);
+        model.rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        model.shutdown();
+        dataSource.close();
+    }
+
+    @Benchmark
+    public List<Film> sqlRecommendations() {
+        return storage.getRecommendations(randomUserId());
+    }
+
+    @Benchmark
+    public List<Film> modelRecommendations() {
+        return storage.findAllByIds(model.recommend(randomUserId()));
+    }
+
+    @Benchmark
+    public List<Integer> modelRecommendationIds() {
+        return model.recommend(randomUserId());
+    }
+
+    private int randomUserId() {
+        return ThreadLocalRandom.current().nextInt(users) + 1;
+    }
+}
@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полный пересчёт соседей всех пользователей в зависимости от числа потоков {@link ForkJoinPool}.
+ * <p>
+ * {@code recompute} измеряет только вычисление по уже загруженному графу лайков,
+ * {@code rebuild} — полную сборку модели вместе с чтением film_likes из БД.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimilarityModelRebuildBenchmark {
+
+    @Param("10000")
+    private int films;
+
+    @Param("20000")
+    private int users;
+
+    @Param("50")
+    private int likesPerUser;
+
+    @Param("1.0")
+    private double zipfExponent;
+
+    @Param({"1", "2", "4"})
+    private int parallelism;
+
+    private HikariDataSource dataSource;
+    private UserSimilarityModel model;
+    private ForkJoinPool pool;
+    private Map<Integer, int[]> likesByUser;
+    private Map<Integer, int[]> likersByFilm;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:rebuild;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("password");
+
+        new SyntheticDataSet(films, users, 10, 500, likesPerUser, zipfExponent, 42).populate(dataSource);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        model = new UserSimilarityModel(jdbc, 10, Duration.ofMinutes(1), parallelism);
+        pool = new ForkJoinPool(parallelism);
+
+        likesByUser = new HashMap<>();
+        likersByFilm = new HashMap<>();
+        jdbc.query("SELECT user_id, ARRAY_AGG(film_id ORDER BY film_id) AS ids FROM film_likes GROUP BY user_id",
+                rs -> {
+                    likesByUser.put(rs.getInt("user_id"), toIntArray(rs.getArray("ids").getArray()));
+                });
+        jdbc.query("SELECT film_id, ARRAY_AGG(user_id ORDER BY user_id) AS ids FROM film_likes GROUP BY film_id",
+                rs -> {
+                    likersByFilm.put(rs.getInt("film_id"), toIntArray(rs.getArray("ids").getArray()));
+                });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+        model.shutdown();
+        dataSource.close();
+    }
+
+    @Benchmark
+    public Map<Integer, UserSimilarityModel.Neighbours> recompute() {
+        return new NeighboursRecompute(likesByUser, likersByFilm, 10).compute(pool);
+    }
+
+    @Benchmark
+    public long rebuild() {
+        model.rebuild();
+        return model.neighbourEntries();
+    }
+
+    private static int[] toIntArray(Object array) {
+        Object[] values = (Object[]) array;
+        int[] result = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = ((Number) values[i]).intValue();
+        }
+        return result;
+    }
+}
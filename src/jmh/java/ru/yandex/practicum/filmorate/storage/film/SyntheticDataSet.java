@@ -0,0 +1,191 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Заполняет БД синтетическими данными для бенчмарков.
+ * <p>
+ * Схема создаётся из {@code schema.sql} приложения. Лайки распределены по закону Ципфа:
+ * фильм с рангом k получает лайки с вероятностью, пропорциональной 1 / k^s, поэтому
+ * небольшое число фильмов собирает большую часть лайков, как в реальном каталоге.
+ * Генератор детерминирован для одного и того же {@code seed}.
+ */
+final class SyntheticDataSet {
+
+    private static final String[] SYLLABLES = {
+        "ka", "ro", "mi", "ta", "ne", "lo", "vi", "sa", "du", "ber", "gan", "tor", "lin", "mar", "zo", "pe"
+    };
+
+    private static final int MPA_COUNT = 5;
+    private static final int BATCH_SIZE = 1000;
+
+    private final int films;
+    private final int users;
+    private final int genres;
+    private final int directors;
+    private final int likesPerUser;
+    private final double zipfExponent;
+    private final Random random;
+
+    SyntheticDataSet(int films, int users, int genres, int directors, int likesPerUser, double zipfExponent,
+                     long seed) {
+        this.films = films;
+        this.users = users;
+        this.genres = genres;
+        this.directors = directors;
+        this.likesPerUser = Math.min(likesPerUser, films);
+        this.zipfExponent = zipfExponent;
+        this.random = new Random(seed);
+    }
+
+    void populate(DataSource dataSource) {
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 1; i <= MPA_COUNT; i++) {
+            rows.add(new Object[]{i, "MPA-" + i});
+        }
+        jdbc.batchUpdate("INSERT INTO mpa_rating (mpa_id, name) VALUES (?, ?)", rows);
+
+        rows.clear();
+        for (int i = 1; i <= genres; i++) {
+            rows.add(new Object[]{i, "Жанр " + i});
+        }
+        jdbc.batchUpdate("INSERT INTO genres (genre_id, name) VALUES (?, ?)", rows);
+
+        rows.clear();
+        for (int i = 1; i <= directors; i++) {
+            rows.add(new Object[]{i, title(2)});
+        }
+        batchInsert(jdbc, "INSERT INTO directors (director_id, name) VALUES (?, ?)", rows);
+
+        for (int i = 1; i <= users; i++) {
+            rows.add(new Object[]{i, "user" + i + "@mail.ru", "user" + i, "User " + i,
+                Date.valueOf(LocalDate.of(1960 + random.nextInt(45), 1 + random.nextInt(12), 1))});
+        }
+        batchInsert(jdbc, "INSERT INTO users (user_id, email, login, name, birthday) VALUES (?, ?, ?, ?, ?)", rows);
+
+        for (int i = 1; i <= films; i++) {
+            rows.add(new Object[]{i, title(1 + random.nextInt(3)), "Описание фильма " + i,
+                Date.valueOf(LocalDate.of(1950 + random.nextInt(75), 1 + random.nextInt(12), 1)),
+                60 + random.nextInt(120), 1 + random.nextInt(MPA_COUNT)});
+        }
+        batchInsert(jdbc, "INSERT INTO films (film_id, name, description, release_date, duration, mpa_id) " +
+                          "VALUES (?, ?, ?, ?, ?, ?)", rows);
+
+        for (int filmId = 1; filmId <= films; filmId++) {
+            for (int genreId : distinct(1 + random.nextInt(Math.min(3, genres)), genres)) {
+                rows.add(new Object[]{filmId, genreId});
+            }
+        }
+        batchInsert(jdbc, "INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)", rows);
+
+        if (directors > 0) {
+            for (int filmId = 1; filmId <= films; filmId++) {
+                rows.add(new Object[]{filmId, 1 + random.nextInt(directors)});
+            }
+            batchInsert(jdbc, "INSERT INTO film_directors (film_id, director_id) VALUES (?, ?)", rows);
+        }
+
+        double[] cumulative = zipfCumulative();
+        int[] filmByRank = shuffledFilmIds();
+        for (int userId = 1; userId <= users; userId++) {
+            Set<Integer> liked = new HashSet<>();
+            while (liked.size() < likesPerUser) {
+                liked.add(filmByRank[rank(cumulative)]);
+            }
+            for (int filmId : liked) {
+                rows.add(new Object[]{filmId, userId});
+            }
+            if (rows.size() >= BATCH_SIZE) {
+                batchInsert(jdbc, "INSERT INTO film_likes (film_id, user_id) VALUES (?, ?)", rows);
+            }
+        }
+        batchInsert(jdbc, "INSERT INTO film_likes (film_id, user_id) VALUES (?, ?)", rows);
+
+        jdbc.update("UPDATE films f SET likes_count = (SELECT COUNT(*) FROM film_likes fl " +
+                    "WHERE fl.film_id = f.film_id)");
+    }
+
+    /**
+     * Название из случайных слогов: так LIKE-поиск по подстроке находит заметную, но не полную долю фильмов.
+     */
+    private String title(int words) {
+        StringBuilder title = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                title.append(' ');
+            }
+            int syllables = 2 + random.nextInt(2);
+            for (int s = 0; s < syllables; s++) {
+                String syllable = SYLLABLES[random.nextInt(SYLLABLES.length)];
+                title.append(w == 0 && s == 0 ? Character.toUpperCase(syllable.charAt(0)) + syllable.substring(1)
+                        : syllable);
+            }
+        }
+        return title.toString();
+    }
+
+    private double[] zipfCumulative() {
+        double[] cumulative = new double[films];
+        double sum = 0;
+        for (int rank = 0; rank < films; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, zipfExponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < films; rank++) {
+            cumulative[rank] /= sum;
+        }
+        return cumulative;
+    }
+
+    private int rank(double[] cumulative) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+
+    /**
+     * Популярность не должна совпадать с порядком id, иначе ORDER BY по id и по лайкам дают одно и то же.
+     */
+    private int[] shuffledFilmIds() {
+        int[] ids = new int[films];
+        for (int i = 0; i < films; i++) {
+            ids[i] = i + 1;
+        }
+        for (int i = films - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = ids[i];
+            ids[i] = ids[j];
+            ids[j] = tmp;
+        }
+        return ids;
+    }
+
+    private Set<Integer> distinct(int count, int bound) {
+        Set<Integer> values = new HashSet<>();
+        while (values.size() < count) {
+            values.add(1 + random.nextInt(bound));
+        }
+        return values;
+    }
+
+    private static void batchInsert(JdbcTemplate jdbc, String sql, List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbc.batchUpdate(sql, rows);
+            rows.clear();
+        }
+    }
+}
@@ -1,16 +1,25 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.controller.params.FilmInclude;
 import ru.yandex.practicum.filmorate.controller.params.SearchBy;
+import ru.yandex.practicum.filmorate.controller.params.SearchSortBy;
 import ru.yandex.practicum.filmorate.controller.params.SortBy;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSuggestion;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.utils.NdjsonWriter;
 
 import java.util.List;
 import java.util.Set;
@@ -21,7 +30,11 @@ import java.util.Set;
 @RequestMapping("/films")
 @RequiredArgsConstructor
 public class FilmController {
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_SUGGESTIONS = 50;
+
     private final FilmService filmService;
+    private final NdjsonWriter ndjsonWriter;
 
     @PostMapping
     public Film createFilm(@Valid @RequestBody Film film) {
@@ -35,16 +48,40 @@ public class FilmController {
         return filmService.updateFilm(film);
     }
 
+    /**
+     * Возвращает все фильмы или, если передан limit, страницу фильмов с id больше after.
+     * Следующая страница запрашивается с after, равным id последнего фильма текущей страницы.
+     */
     @GetMapping
-    public List<Film> getAllFilms() {
-        log.info("GET /films - получение списка всех фильмов");
-        return filmService.getAllFilms();
+    public List<Film> getAllFilms(@RequestParam(required = false)
+                                  @PositiveOrZero(message = "after should be non-negative integer") Integer after,
+                                  @RequestParam(required = false)
+                                  @Positive(message = "limit should be positive integer")
+                                  @Max(value = MAX_PAGE_SIZE, message = "limit should not exceed 1000") Integer limit,
+                                  @RequestParam(required = false) Set<FilmInclude> include) {
+        log.info("GET /films - получение списка фильмов, after: {}, limit: {}, include: {}", after, limit, include);
+        List<Film> films = limit == null ? filmService.getAllFilms() : filmService.getFilmsPage(after, limit);
+        return filmService.applyIncludes(films, include);
+    }
+
+    /**
+     * Потоковая выдача всех фильмов в формате NDJSON (Accept: application/x-ndjson).
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllFilms(
+            @RequestParam(required = false) Set<FilmInclude> include) {
+        log.info("GET /films - потоковая выдача всех фильмов, include: {}", include);
+        StreamingResponseBody body = ndjsonWriter.<Film>write(consumer -> filmService.streamAllFilms(include, consumer));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping("/{id}")
-    public Film getFilmById(@PathVariable Integer id) {
-        log.info("GET /films/{} - получение фильма по id", id);
-        return filmService.getFilmById(id);
+    public Film getFilmById(@PathVariable Integer id,
+                            @RequestParam(required = false) Set<FilmInclude> include) {
+        log.info("GET /films/{} - получение фильма по id, include: {}", id, include);
+        return filmService.applyIncludes(List.of(filmService.getFilmById(id)), include).getFirst();
     }
 
     @PutMapping("/{id}/like/{userId}")
@@ -65,22 +102,24 @@ public class FilmController {
                                       @RequestParam(required = false)
                                       @Min(value = 1895, message = "Year should be after or equal to 1895") Integer year,
                                       @RequestParam(required = false)
-                                      @Positive(message = "genreId should be positive integer") Integer genreId) {
+                                      @Positive(message = "genreId should be positive integer") Integer genreId,
+                                      @RequestParam(required = false) Set<FilmInclude> include) {
         log.info("GET /films/popular - получение популярных фильмов, count: {}, year: {}, genreId: {}",
                 count, year, genreId);
 
-        return filmService.getPopularFilms(count, year, genreId);
+        return filmService.applyIncludes(filmService.getPopularFilms(count, year, genreId), include);
     }
 
     @GetMapping("/common")
     public List<Film> getCommonFilms(@RequestParam
                                      @Positive(message = "userId should be positive integer") Integer userId,
                                      @RequestParam
-                                     @Positive(message = "friendId should be positive integer") Integer friendId) {
+                                     @Positive(message = "friendId should be positive integer") Integer friendId,
+                                     @RequestParam(required = false) Set<FilmInclude> include) {
         log.info("GET /films/common - получение общих фильмов для пользователей: userId: {}, friendId: {}",
                 userId, friendId);
 
-        return filmService.getCommonFilms(userId, friendId);
+        return filmService.applyIncludes(filmService.getCommonFilms(userId, friendId), include);
     }
 
     /**
@@ -92,28 +131,49 @@ public class FilmController {
      * @param sortBy     — критерий сортировки (по умолчанию "likes"):
      *                   likes — сортировать по количеству лайков (по убыванию)
      *                   year  — сортировать по году выпуска (по возрастанию)
+     * @param include    — дополнительные данные фильмов (likes — список лайкнувших пользователей)
      * @return список фильмов режиссера, отсортированный по заданному критерию.
      */
     @GetMapping("/director/{directorId}")
     public List<Film> getFilmsByDirector(@PathVariable Integer directorId,
-                                         @RequestParam(defaultValue = "likes") SortBy sortBy) {
+                                         @RequestParam(defaultValue = "likes") SortBy sortBy,
+                                         @RequestParam(required = false) Set<FilmInclude> include) {
         log.info("GET /films/director/{} - получение фильмов по режиссеру, sortBy: {}", directorId, sortBy);
-        return filmService.getFilmsByDirector(directorId, sortBy);
+        return filmService.applyIncludes(filmService.getFilmsByDirector(directorId, sortBy), include);
     }
 
     /**
      * Поиск фильмов по названию и/или имени режиссера.
-     * Результаты сортируются по количеству лайков (по убыванию).
+     * По умолчанию результаты сортируются по количеству лайков (по убыванию).
      *
      * @param query строка поиска (регистронезависимый поиск)
      * @param by    параметры поиска (title, director или оба через запятую)
+     * @param sortBy порядок результатов: likes — по лайкам, relevance — по качеству совпадения с учётом лайков
+     * @param include дополнительные данные фильмов (likes — список лайкнувших пользователей)
      * @return список найденных фильмов
      */
     @GetMapping("/search")
     public List<Film> searchFilm(@RequestParam String query,
-                                 @RequestParam Set<SearchBy> by) {
-        log.info("GET /films/search - получение фильмов по названию или имени режиссера: query: {}, by: {}", query, by);
-        return filmService.searchFilm(query, by);
+                                 @RequestParam Set<SearchBy> by,
+                                 @RequestParam(defaultValue = "likes") SearchSortBy sortBy,
+                                 @RequestParam(required = false) Set<FilmInclude> include) {
+        log.info("GET /films/search - получение фильмов по названию или имени режиссера: query: {}, by: {}, sortBy: {}",
+                query, by, sortBy);
+        return filmService.applyIncludes(filmService.searchFilm(query, by, sortBy), include);
+    }
+
+    /**
+     * Подсказки для поиска по мере ввода: id, название и режиссёр первых limit фильмов, у которых с query
+     * начинается название, слово названия или слово имени режиссёра.
+     */
+    @GetMapping("/search/suggest")
+    public List<FilmSuggestion> suggestFilms(@RequestParam String query,
+                                             @RequestParam(defaultValue = "10")
+                                             @Positive(message = "limit should be positive integer")
+                                             @Max(value = MAX_SUGGESTIONS, message = "limit should not exceed 50")
+                                             Integer limit) {
+        log.debug("GET /films/search/suggest - подсказки для поиска: query: {}, limit: {}", query, limit);
+        return filmService.suggestFilms(query, limit);
     }
 
     @DeleteMapping("/{id}")
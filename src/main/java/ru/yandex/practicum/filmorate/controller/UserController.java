@@ -1,27 +1,44 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.controller.params.FilmInclude;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.feed.FeedEvent;
 import ru.yandex.practicum.filmorate.service.FeedService;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.utils.NdjsonWriter;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 @Slf4j
 @RestController
+@Validated
 @RequestMapping("/users")
 @RequiredArgsConstructor
 public class UserController {
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
     private final UserService userService;
     private final FeedService feedService;
     private final FilmService filmService;
+    private final NdjsonWriter ndjsonWriter;
 
     @PostMapping
     public User createUser(@Valid @RequestBody User user) {
@@ -35,10 +52,30 @@ public class UserController {
         return userService.updateUser(user);
     }
 
+    /**
+     * Возвращает всех пользователей или, если передан limit, страницу пользователей с id больше after.
+     * Следующая страница запрашивается с after, равным id последнего пользователя текущей страницы.
+     */
     @GetMapping
-    public List<User> getAllUsers() {
-        log.info("GET /users - получение всех пользователей");
-        return userService.getAllUsers();
+    public List<User> getAllUsers(@RequestParam(required = false)
+                                  @PositiveOrZero(message = "after should be non-negative integer") Integer after,
+                                  @RequestParam(required = false)
+                                  @Positive(message = "limit should be positive integer")
+                                  @Max(value = MAX_PAGE_SIZE, message = "limit should not exceed 1000") Integer limit) {
+        log.info("GET /users - получение пользователей, after: {}, limit: {}", after, limit);
+        return limit == null ? userService.getAllUsers() : userService.getUsersPage(after, limit);
+    }
+
+    /**
+     * Потоковая выдача всех пользователей в формате NDJSON (Accept: application/x-ndjson).
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        log.info("GET /users - потоковая выдача всех пользователей");
+        StreamingResponseBody body = ndjsonWriter.<User>write(userService::streamAllUsers);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping("/{id}")
@@ -71,16 +108,57 @@ public class UserController {
         return userService.getCommonFriends(id, otherId);
     }
 
+    /**
+     * Возвращает всю ленту пользователя или, если передан limit, страницу событий с id больше sinceEventId.
+     * Если страница заполнена целиком, в заголовке {@value #NEXT_CURSOR_HEADER} передаётся значение
+     * sinceEventId для следующей страницы.
+     */
     @GetMapping("/{id}/feed")
-    public Collection<FeedEvent> getFeed(@PathVariable Integer id) {
-        log.info("GET /users/{}/feed - получение ленты пользователя", id);
-        return feedService.getFeed(id);
+    public ResponseEntity<Collection<FeedEvent>> getFeed(
+            @PathVariable Integer id,
+            @RequestParam(required = false)
+            @PositiveOrZero(message = "sinceEventId should be non-negative integer") Integer sinceEventId,
+            @RequestParam(required = false)
+            @Positive(message = "limit should be positive integer")
+            @Max(value = MAX_PAGE_SIZE, message = "limit should not exceed 1000") Integer limit) {
+        log.info("GET /users/{}/feed - получение ленты пользователя, sinceEventId: {}, limit: {}", id, sinceEventId,
+                limit);
+        if (limit == null) {
+            return ResponseEntity.ok(feedService.getFeed(id));
+        }
+
+        List<FeedEvent> events = feedService.getFeedPage(id, sinceEventId, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (events.size() == limit) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(events.getLast().getEventId()));
+        }
+        return response.body(events);
+    }
+
+    @GetMapping(value = "/{id}/feed/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamFeed(
+            @PathVariable Integer id,
+            @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false)
+            @PositiveOrZero(message = "Last-Event-ID should be non-negative integer") Integer lastEventId) {
+        log.info("GET /users/{}/feed/stream - подписка на ленту пользователя, Last-Event-ID: {}", id, lastEventId);
+        return feedService.streamFeed(id, lastEventId);
+    }
+
+    @GetMapping("/{id}/feed/friends")
+    public List<FeedEvent> getFriendsFeed(
+            @PathVariable Integer id,
+            @RequestParam(defaultValue = "20")
+            @Positive(message = "limit should be positive integer")
+            @Max(value = MAX_PAGE_SIZE, message = "limit should not exceed 1000") Integer limit) {
+        log.info("GET /users/{}/feed/friends - получение ленты друзей пользователя, limit: {}", id, limit);
+        return feedService.getFriendsFeed(id, limit);
     }
 
     @GetMapping("/{id}/recommendations")
-    public Collection<Film> getRecommendations(@PathVariable Integer id) {
+    public Collection<Film> getRecommendations(@PathVariable Integer id,
+                                               @RequestParam(required = false) Set<FilmInclude> include) {
         log.info("GET /users/{}/recommendations - получение рекомендаций для пользователя", id);
-        return filmService.getRecommendations(id);
+        return filmService.applyIncludes(filmService.getRecommendations(id), include);
     }
 
     @DeleteMapping("/{id}")
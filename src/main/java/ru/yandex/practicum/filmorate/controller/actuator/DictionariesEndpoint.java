@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.controller.actuator;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.FilmCardCache;
+import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+
+/**
+ * Служебный endpoint справочников жанров и рейтингов MPA: /actuator/dictionaries.
+ * <p>
+ * GET возвращает размеры справочников в памяти, POST перечитывает их из БД и очищает кеш карточек фильмов,
+ * которые ссылаются на прежние экземпляры жанров и рейтингов.
+ */
+@Component
+@Endpoint(id = "dictionaries")
+@RequiredArgsConstructor
+public class DictionariesEndpoint {
+    private final GenreStorage genreStorage;
+    private final MpaStorage mpaStorage;
+    private final FilmCardCache filmCardCache;
+
+    @ReadOperation
+    public DictionariesReport report() {
+        return new DictionariesReport(genreStorage.findAll().size(), mpaStorage.findAll().size());
+    }
+
+    @WriteOperation
+    public DictionariesReport invalidate() {
+        genreStorage.invalidate();
+        mpaStorage.invalidate();
+        filmCardCache.invalidateAll();
+        return report();
+    }
+
+    public record DictionariesReport(int genres, int mpa) {
+    }
+}
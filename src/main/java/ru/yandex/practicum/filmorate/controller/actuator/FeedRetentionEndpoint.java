@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.controller.actuator;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.feed.FeedArchive;
+import ru.yandex.practicum.filmorate.storage.feed.FeedRetention;
+import ru.yandex.practicum.filmorate.storage.feed.FriendsTimeline;
+
+import java.util.List;
+
+/**
+ * Служебный endpoint очистки ленты: /actuator/feedretention.
+ * <p>
+ * GET возвращает итог последней очистки и список сегментов архива, POST с телом {"segment": "..."}
+ * восстанавливает события сегмента в ленту.
+ * <p>
+ * Восстановленные события сохраняют исходное время создания и по-прежнему старше {@code max-age} или сверх
+ * лимита пользователя, поэтому очистка не трогает их только {@code filmorate.feed.retention.restore-window}
+ * после восстановления. Чтобы события остались в ленте дольше, на это время нужно поднять лимиты очистки,
+ * иначе после окончания окна они снова уйдут в архив.
+ */
+@Component
+@Endpoint(id = "feedretention")
+@RequiredArgsConstructor
+public class FeedRetentionEndpoint {
+    private final FeedRetention feedRetention;
+    private final FeedArchive feedArchive;
+    private final FriendsTimeline friendsTimeline;
+
+    @ReadOperation
+    public RetentionStatus status() {
+        return new RetentionStatus(feedRetention.lastReport(), feedRetention.pruned(), feedArchive.segments());
+    }
+
+    @WriteOperation
+    public ReplayReport replay(String segment) {
+        int restored = feedArchive.replay(segment);
+        // Восстановленные события могут попасть в ленты друзей, собранные без них
+        friendsTimeline.invalidateAll();
+        return new ReplayReport(segment, restored);
+    }
+
+    public record RetentionStatus(FeedRetention.RetentionReport lastRun,
+                                  long prunedTotal,
+                                  List<String> archiveSegments) {
+    }
+
+    public record ReplayReport(String segment, int restored) {
+    }
+}
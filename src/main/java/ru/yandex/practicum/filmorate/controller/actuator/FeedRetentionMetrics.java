@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.controller.actuator;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.feed.FeedRetention;
+
+/**
+ * Метрики очистки ленты, доступные через /actuator/metrics.
+ */
+@Component
+@RequiredArgsConstructor
+public class FeedRetentionMetrics implements MeterBinder {
+    private final FeedRetention feedRetention;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("filmorate.feed.retention.pruned", feedRetention, FeedRetention::pruned)
+                .description("События, удалённые очисткой ленты")
+                .register(registry);
+        Gauge.builder("filmorate.feed.retention.last-run.duration", feedRetention,
+                        retention -> retention.lastReport() == null ? 0 : retention.lastReport().durationMillis())
+                .description("Длительность последней очистки ленты")
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+}
@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.controller.actuator;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.service.FeedBroadcaster;
+
+/**
+ * Метрики потока событий ленты, доступные через /actuator/metrics.
+ */
+@Component
+@RequiredArgsConstructor
+public class FeedStreamMetrics implements MeterBinder {
+    private final FeedBroadcaster feedBroadcaster;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.feed.stream.connections", feedBroadcaster, FeedBroadcaster::connections)
+                .description("Открытые соединения потока ленты")
+                .register(registry);
+        FunctionCounter.builder("filmorate.feed.stream.sent", feedBroadcaster, FeedBroadcaster::sent)
+                .description("События, отправленные подписчикам")
+                .register(registry);
+        FunctionCounter.builder("filmorate.feed.stream.overflows", feedBroadcaster, FeedBroadcaster::overflows)
+                .description("Соединения, закрытые из-за переполнения очереди подписчика")
+                .register(registry);
+    }
+}
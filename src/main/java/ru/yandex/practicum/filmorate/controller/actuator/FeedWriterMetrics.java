@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.controller.actuator;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.feed.FeedEventWriter;
+
+/**
+ * Метрики асинхронной записи ленты, доступные через /actuator/metrics.
+ */
+@Component
+@RequiredArgsConstructor
+public class FeedWriterMetrics implements MeterBinder {
+    private final FeedEventWriter feedEventWriter;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.feed.writer.pending", feedEventWriter, FeedEventWriter::pending)
+                .description("События в буфере и в очереди повторов")
+                .register(registry);
+        FunctionCounter.builder("filmorate.feed.writer.written", feedEventWriter, FeedEventWriter::written)
+                .description("События, записанные в БД")
+                .register(registry);
+        FunctionCounter.builder("filmorate.feed.writer.dropped", feedEventWriter, FeedEventWriter::dropped)
+                .description("События, отброшенные из-за ошибок записи")
+                .register(registry);
+        FunctionCounter.builder("filmorate.feed.writer.caller-flushes", feedEventWriter,
+                        FeedEventWriter::callerFlushes)
+                .description("Записи буфера вызывающим потоком из-за заполненного буфера")
+                .register(registry);
+        FunctionCounter.builder("filmorate.feed.writer.synchronous-writes", feedEventWriter,
+                        FeedEventWriter::synchronousWrites)
+                .description("События, записанные в транзакции вызывающего кода из-за отставания или ошибок записи")
+                .register(registry);
+    }
+}
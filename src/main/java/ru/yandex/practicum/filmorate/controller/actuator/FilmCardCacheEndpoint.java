@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.controller.actuator;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.FilmCardCache;
+
+/**
+ * Служебный endpoint кеша карточек фильмов: /actuator/filmcache.
+ * <p>
+ * GET возвращает статистику кеша с момента старта, POST очищает кеш.
+ */
+@Component
+@Endpoint(id = "filmcache")
+@RequiredArgsConstructor
+public class FilmCardCacheEndpoint {
+    private final FilmCardCache filmCardCache;
+
+    @ReadOperation
+    public CacheReport report() {
+        CacheStats stats = filmCardCache.stats();
+        return new CacheReport(stats.hitRate(), stats.hitCount(), stats.missCount(), stats.evictionCount(),
+                stats.evictionWeight(), filmCardCache.size(), filmCardCache.weightedSize(), filmCardCache.maxWeight());
+    }
+
+    @WriteOperation
+    public CacheReport invalidate() {
+        filmCardCache.invalidateAll();
+        return report();
+    }
+
+    public record CacheReport(double hitRatio,
+                              long hits,
+                              long misses,
+                              long evictions,
+                              long evictedBytes,
+                              long films,
+                              long weightedBytes,
+                              long maxBytes) {
+    }
+}
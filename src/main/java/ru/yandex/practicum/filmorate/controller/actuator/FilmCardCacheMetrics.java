@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.controller.actuator;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.FilmCardCache;
+
+/**
+ * Метрики кеша карточек фильмов, доступные через /actuator/metrics.
+ */
+@Component
+@RequiredArgsConstructor
+public class FilmCardCacheMetrics implements MeterBinder {
+    private final FilmCardCache filmCardCache;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.film-cache.hit.ratio", filmCardCache, cache -> cache.stats().hitRate())
+                .description("Доля запросов карточек, обслуженных из кеша")
+                .register(registry);
+        FunctionCounter.builder("filmorate.film-cache.hits", filmCardCache, cache -> cache.stats().hitCount())
+                .description("Запросы карточек, обслуженные из кеша")
+                .register(registry);
+        FunctionCounter.builder("filmorate.film-cache.misses", filmCardCache, cache -> cache.stats().missCount())
+                .description("Запросы карточек, загруженных из БД")
+                .register(registry);
+        FunctionCounter.builder("filmorate.film-cache.evictions", filmCardCache,
+                        cache -> cache.stats().evictionCount())
+                .description("Карточки, вытесненные из кеша по размеру")
+                .register(registry);
+        Gauge.builder("filmorate.film-cache.size", filmCardCache, FilmCardCache::weightedSize)
+                .description("Приблизительный объём карточек в кеше")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+}
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.controller.actuator;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Служебный endpoint индекса популярности: /actuator/popularity.
+ * <p>
+ * GET сравнивает ответ индекса с ответом SQL-запроса {@link FilmStorage#findPopularFilms}
+ * для тех же параметров, POST перестраивает индекс из БД.
+ */
+@Slf4j
+@Component
+@Endpoint(id = "popularity")
+@RequiredArgsConstructor
+public class PopularityIndexEndpoint {
+    private static final int DEFAULT_COUNT = 10;
+
+    private final FilmPopularityIndex popularityIndex;
+    private final FilmStorage filmStorage;
+
+    @ReadOperation
+    public ConsistencyReport check(@Nullable Integer count, @Nullable Integer year, @Nullable Integer genreId) {
+        int limit = count == null ? DEFAULT_COUNT : count;
+
+        List<Integer> indexIds = popularityIndex.top(limit, year, genreId);
+        List<Integer> databaseIds = filmStorage.findPopularFilms(limit, year, genreId).stream()
+                .map(Film::getId)
+                .toList();
+
+        List<Integer> missingInIndex = new ArrayList<>(databaseIds);
+        missingInIndex.removeAll(indexIds);
+        List<Integer> unexpectedInIndex = new ArrayList<>(indexIds);
+        unexpectedInIndex.removeAll(databaseIds);
+
+        boolean consistent = indexIds.equals(databaseIds);
+        if (!consistent) {
+            log.warn("Индекс популярности расходится с БД: count={}, year={}, genreId={}, index={}, db={}",
+                    limit, year, genreId, indexIds, databaseIds);
+        }
+        return new ConsistencyReport(consistent, popularityIndex.size(), indexIds, databaseIds, missingInIndex,
+                unexpectedInIndex);
+    }
+
+    @WriteOperation
+    public void rebuild() {
+        popularityIndex.rebuild();
+    }
+
+    public record ConsistencyReport(boolean consistent,
+                                    int indexedFilms,
+                                    List<Integer> indexIds,
+                                    List<Integer> databaseIds,
+                                    List<Integer> missingInIndex,
+                                    List<Integer> unexpectedInIndex) {
+    }
+}
@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.controller.actuator;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.UserSimilarityModel;
+
+/**
+ * Служебный endpoint модели похожести пользователей: /actuator/recommendations.
+ * <p>
+ * GET возвращает состояние модели, POST полностью пересчитывает её из БД.
+ */
+@Component
+@Endpoint(id = "recommendations")
+@RequiredArgsConstructor
+public class RecommendationModelEndpoint {
+    private final UserSimilarityModel similarityModel;
+
+    @ReadOperation
+    public ModelReport report() {
+        return new ModelReport(similarityModel.users(), similarityModel.likes(), similarityModel.neighbourEntries(),
+                similarityModel.staleUsers(), similarityModel.lastBuildMillis(), similarityModel.parallelism());
+    }
+
+    @WriteOperation
+    public ModelReport rebuild() {
+        similarityModel.rebuild();
+        return report();
+    }
+
+    public record ModelReport(int users,
+                              long likes,
+                              long neighbours,
+                              int staleUsers,
+                              long lastBuildMillis,
+                              int parallelism) {
+    }
+}
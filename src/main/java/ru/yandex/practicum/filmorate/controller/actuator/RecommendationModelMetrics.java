@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.controller.actuator;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.UserSimilarityModel;
+
+/**
+ * Метрики модели похожести пользователей, доступные через /actuator/metrics.
+ */
+@Component
+@RequiredArgsConstructor
+public class RecommendationModelMetrics implements MeterBinder {
+    private final UserSimilarityModel similarityModel;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.recommendations.build.time", similarityModel, UserSimilarityModel::lastBuildMillis)
+                .description("Длительность последней полной сборки модели")
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("filmorate.recommendations.build.age", similarityModel,
+                        model -> System.currentTimeMillis() - model.lastBuildFinishedAt())
+                .description("Время с окончания последней полной сборки модели")
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("filmorate.recommendations.users", similarityModel, UserSimilarityModel::users)
+                .description("Пользователи с лайками в модели")
+                .register(registry);
+        Gauge.builder("filmorate.recommendations.likes", similarityModel, UserSimilarityModel::likes)
+                .description("Лайки в модели")
+                .register(registry);
+        Gauge.builder("filmorate.recommendations.neighbours", similarityModel,
+                        UserSimilarityModel::neighbourEntries)
+                .description("Сохранённые пары пользователь — сосед")
+                .register(registry);
+        Gauge.builder("filmorate.recommendations.stale.users", similarityModel, UserSimilarityModel::staleUsers)
+                .description("Пользователи, чьи соседи ожидают пересчёта")
+                .register(registry);
+        Gauge.builder("filmorate.recommendations.staleness", similarityModel, UserSimilarityModel::stalenessMillis)
+                .description("Сколько ждёт пересчёта самый давний устаревший пользователь")
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+}
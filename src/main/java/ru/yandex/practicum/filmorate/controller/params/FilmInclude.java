@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.controller.params;
+
+/**
+ * Дополнительные данные, которые можно запросить вместе с фильмами параметром include.
+ * Пример: GET /films?include=likes
+ */
+public enum FilmInclude {
+    likes
+}
@@ -0,0 +1,10 @@
+package ru.yandex.practicum.filmorate.controller.params;
+
+/**
+ * Порядок результатов поиска фильмов, параметр sortBy.
+ * Пример: GET /films/search?query=крад&by=title&sortBy=relevance
+ */
+public enum SearchSortBy {
+    likes,
+    relevance
+}
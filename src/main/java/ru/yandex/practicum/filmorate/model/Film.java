@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
@@ -31,7 +32,11 @@ public class Film {
 
     private Set<Genre> genres = new LinkedHashSet<>();
 
-    private Set<Integer> likes = new HashSet<>();
+    private int likesCount;
+
+    // Заполняется только по запросу (?include=likes), иначе не попадает в JSON
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Set<Integer> likes;
 
     private List<Director> directors = new ArrayList<>();
 }
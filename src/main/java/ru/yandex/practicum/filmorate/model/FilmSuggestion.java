@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Подсказка для поиска по мере ввода: фильм без жанров, рейтинга и лайков.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FilmSuggestion {
+    private Integer id;
+    private String name;
+
+    // Режиссёр, по имени которого найден фильм, иначе первый режиссёр фильма
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String director;
+}
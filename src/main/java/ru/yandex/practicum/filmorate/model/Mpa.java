@@ -1,13 +1,24 @@
 package ru.yandex.practicum.filmorate.model;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 
-@Data
-@NoArgsConstructor
-@AllArgsConstructor
-public class Mpa {
-    private Integer id;
-    private String name;
+/**
+ * Рейтинг MPA фильма. Неизменяемый: справочник отдаёт всем фильмам один и тот же экземпляр.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public final class Mpa {
+    private final Integer id;
+    private final String name;
+
+    @JsonCreator
+    public Mpa(@JsonProperty("id") Integer id, @JsonProperty("name") String name) {
+        this.id = id;
+        this.name = name;
+    }
 }
@@ -6,6 +6,8 @@ import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmCardCache;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
 
 import java.util.List;
 
@@ -14,6 +16,8 @@ import java.util.List;
 @Slf4j
 public class DirectorService {
     private final DirectorStorage directorStorage;
+    private final FilmSearchIndex searchIndex;
+    private final FilmCardCache filmCardCache;
 
     public List<Director> getAllDirectors() {
         return directorStorage.getAllDirectors();
@@ -25,20 +29,27 @@ public class DirectorService {
     }
 
     public Director addDirector(Director director) {
-        return directorStorage.addDirector(director);
+        Director createdDirector = directorStorage.addDirector(director);
+        searchIndex.onDirectorSaved(createdDirector);
+        return createdDirector;
     }
 
     public Director updateDirector(Director director) {
-        if (!directorStorage.isDirectorPresent(director.getId())) {
+        if (!directorStorage.exists(director.getId())) {
             throw new NotFoundException("Режиссер с id " + director.getId() + " не найден");
         }
-        return directorStorage.updateDirector(director);
+        Director updatedDirector = directorStorage.updateDirector(director);
+        searchIndex.onDirectorSaved(updatedDirector);
+        filmCardCache.onDirectorChanged(updatedDirector.getId());
+        return updatedDirector;
     }
 
     public void deleteDirector(Integer id) {
-        if (!directorStorage.isDirectorPresent(id)) {
+        if (!directorStorage.exists(id)) {
             throw new NotFoundException("Режиссер с id " + id + " не найден");
         }
         directorStorage.deleteDirector(id);
+        searchIndex.onDirectorDeleted(id);
+        filmCardCache.onDirectorChanged(id);
     }
 }
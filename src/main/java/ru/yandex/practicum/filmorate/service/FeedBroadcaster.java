@@ -0,0 +1,272 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.model.feed.FeedEvent;
+import ru.yandex.practicum.filmorate.storage.feed.FeedEventWriter;
+import ru.yandex.practicum.filmorate.storage.feed.FeedStorage;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Рассылка новых событий ленты подписчикам потока Server-Sent Events.
+ * <p>
+ * Открытое соединение не занимает поток: запрос переводится в асинхронный режим сервлета, и пока событий нет,
+ * соединение только хранится в памяти. События отправляются в виртуальных потоках, по одной задаче на
+ * подписчика за раз, поэтому медленный клиент не задерживает остальных, а события доходят в порядке публикации.
+ * У подписчика ограниченная очередь ({@code filmorate.feed.stream.queue-capacity}); если клиент не успевает
+ * её разбирать, соединение закрывается, и клиент переподключается с Last-Event-ID.
+ * <p>
+ * С Last-Event-ID подписчик сначала получает из БД события пользователя с большим id, а затем события,
+ * опубликованные после подписки; событие, попавшее в оба источника, отправляется один раз. Если событие
+ * с id до момента подписки ещё не записано в БД (ждёт повтора записи или фиксации долгой транзакции),
+ * выборка из БД откладывается до его записи, чтобы не отправить клиенту события через его голову. Раз в
+ * {@code filmorate.feed.stream.heartbeat-interval} подписчикам отправляется комментарий, чтобы прокси
+ * не закрывали простаивающие соединения, а отключившиеся клиенты обнаруживались.
+ */
+@Slf4j
+@Service
+public class FeedBroadcaster {
+
+    private static final int REPLAY_PAGE_SIZE = 500;
+
+    private final FeedStorage feedStorage;
+    private final FeedEventWriter feedEventWriter;
+    private final Duration timeout;
+    private final int queueCapacity;
+
+    private final ConcurrentMap<Integer, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public FeedBroadcaster(FeedStorage feedStorage, FeedEventWriter feedEventWriter,
+                           @Value("${filmorate.feed.stream.timeout:PT30M}") Duration timeout,
+                           @Value("${filmorate.feed.stream.queue-capacity:256}") int queueCapacity) {
+        this.feedStorage = feedStorage;
+        this.feedEventWriter = feedEventWriter;
+        this.timeout = timeout;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Подписывает клиента на события пользователя.
+     *
+     * @param lastEventId id последнего полученного клиентом события или null, если нужны только новые события
+     */
+    public SseEmitter subscribe(int userId, Integer lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(userId, emitter, lastEventId);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> subscriber.close());
+
+        subscribers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        connections.incrementAndGet();
+        // События с большим id получат id уже после регистрации подписчика и придут в его очередь
+        subscriber.replayUntil = feedEventWriter.lastEventId();
+        subscriber.schedule();
+        log.debug("Подписка на ленту пользователя {}, Last-Event-ID: {}", userId, lastEventId);
+        return emitter;
+    }
+
+    /**
+     * Рассылает событие подписчикам его пользователя после фиксации текущей транзакции.
+     */
+    public void publish(FeedEvent event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deliver(event);
+                }
+            });
+        } else {
+            deliver(event);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.feed.stream.heartbeat-interval:PT30S}")
+    public void heartbeat() {
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(Subscriber::heartbeat));
+    }
+
+    @PreDestroy
+    public void stop() {
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(subscriber -> {
+            subscriber.close();
+            subscriber.emitter.complete();
+        }));
+        executor.shutdownNow();
+    }
+
+    public int connections() {
+        return connections.get();
+    }
+
+    public long sent() {
+        return sent.sum();
+    }
+
+    public long overflows() {
+        return overflows.sum();
+    }
+
+    private void deliver(FeedEvent event) {
+        Set<Subscriber> userSubscribers = subscribers.get(event.getUserId());
+        if (userSubscribers != null) {
+            userSubscribers.forEach(subscriber -> subscriber.offer(event));
+        }
+    }
+
+    private final class Subscriber {
+        private final int userId;
+        private final SseEmitter emitter;
+        private final Queue<FeedEvent> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean heartbeatDue;
+
+        // Id последнего события, выданного до подписки, или -1, пока подписчик не зарегистрирован
+        private volatile int replayUntil = -1;
+
+        // Доступны только задаче отправки, которая у подписчика одна
+        private Integer replayFrom;
+        private Set<Integer> replayed = Set.of();
+
+        Subscriber(int userId, SseEmitter emitter, Integer replayFrom) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.replayFrom = replayFrom;
+        }
+
+        void offer(FeedEvent event) {
+            if (queued.incrementAndGet() > queueCapacity) {
+                log.warn("Подписчик ленты пользователя {} не успевает получать события, соединение закрыто", userId);
+                overflows.increment();
+                close();
+                emitter.complete();
+                return;
+            }
+            queue.add(event);
+            schedule();
+        }
+
+        void heartbeat() {
+            heartbeatDue = true;
+            schedule();
+        }
+
+        void schedule() {
+            if (!closed.get() && draining.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                subscribers.computeIfPresent(userId, (id, userSubscribers) -> {
+                    userSubscribers.remove(this);
+                    return userSubscribers.isEmpty() ? null : userSubscribers;
+                });
+                connections.decrementAndGet();
+            }
+        }
+
+        private void drain() {
+            boolean replayPending = false;
+            try {
+                if (replayFrom != null) {
+                    replayPending = !replay();
+                }
+                FeedEvent event;
+                while (!replayPending && !closed.get() && (event = queue.poll()) != null) {
+                    queued.decrementAndGet();
+                    if (!replayed.contains(event.getEventId())) {
+                        send(event);
+                    }
+                }
+                if (heartbeatDue && !closed.get()) {
+                    heartbeatDue = false;
+                    // Событие, опубликованное во время выборки из БД, уже пришло бы в очередь
+                    replayed = Set.of();
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Соединение ленты пользователя {} закрыто: {}", userId, e.getMessage());
+                close();
+                emitter.completeWithError(e);
+            } catch (RuntimeException e) {
+                log.error("Ошибка отправки ленты пользователя {}", userId, e);
+                close();
+                emitter.completeWithError(e);
+            } finally {
+                draining.set(false);
+            }
+            // Отложенная выборка из БД повторяется, когда она стала возможной, иначе со следующим событием
+            // или heartbeat
+            boolean pendingWork = replayPending ? canReplay() : !queue.isEmpty();
+            if (!closed.get() && (pendingWork || heartbeatDue)) {
+                schedule();
+            }
+        }
+
+        /**
+         * @return false, если событие с id до подписки ещё не записано и выборку надо повторить позже
+         */
+        private boolean replay() throws IOException {
+            feedEventWriter.awaitWritten(userId);
+            if (!canReplay()) {
+                return false;
+            }
+            Set<Integer> replayedIds = new HashSet<>();
+            Integer since = replayFrom;
+            List<FeedEvent> page;
+            do {
+                page = feedStorage.findByUserId(userId, since, replayUntil, REPLAY_PAGE_SIZE);
+                for (FeedEvent event : page) {
+                    send(event);
+                    replayedIds.add(event.getEventId());
+                    since = event.getEventId();
+                }
+            } while (page.size() == REPLAY_PAGE_SIZE && !closed.get());
+            replayed = replayedIds;
+            replayFrom = null;
+            return true;
+        }
+
+        private boolean canReplay() {
+            int until = replayUntil;
+            return until >= 0 && feedEventWriter.visibleEventId() >= until;
+        }
+
+        private void send(FeedEvent event) throws IOException {
+            emitter.send(SseEmitter.event()
+                    .id(String.valueOf(event.getEventId()))
+                    .data(event, MediaType.APPLICATION_JSON));
+            sent.increment();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.feed.FeedRetention;
+
+/**
+ * Очистка старых событий ленты по расписанию {@code filmorate.feed.retention.cron}, по умолчанию ночью.
+ * <p>
+ * Включается свойством {@code filmorate.feed.retention.enabled=true}: очистка удаляет из ленты старые события,
+ * поэтому без неё лента пользователя хранит всю историю.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "filmorate.feed.retention.enabled", havingValue = "true")
+public class FeedRetentionJob {
+    private final FeedRetention feedRetention;
+
+    @Scheduled(cron = "${filmorate.feed.retention.cron:0 0 3 * * *}")
+    public void prune() {
+        feedRetention.run();
+    }
+}
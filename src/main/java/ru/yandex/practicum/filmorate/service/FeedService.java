@@ -3,13 +3,18 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.feed.EventType;
 import ru.yandex.practicum.filmorate.model.feed.FeedEvent;
 import ru.yandex.practicum.filmorate.model.feed.Operation;
+import ru.yandex.practicum.filmorate.storage.feed.FeedEventWriter;
 import ru.yandex.practicum.filmorate.storage.feed.FeedStorage;
-import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.storage.feed.FriendsTimeline;
+import ru.yandex.practicum.filmorate.storage.user.UserCache;
 
 import java.util.Collection;
+import java.util.List;
 
 @Slf4j
 @Service
@@ -17,13 +22,51 @@ import java.util.Collection;
 public class FeedService {
 
     private final FeedStorage feedStorage;
-    private final UserStorage userStorage;
+    private final UserCache userCache;
+    private final FeedEventWriter feedEventWriter;
+    private final FriendsTimeline friendsTimeline;
+    private final FeedBroadcaster feedBroadcaster;
 
     public Collection<FeedEvent> getFeed(Integer userId) {
-        userStorage.findById(userId);
-        return feedStorage.findAllByUserId(userId);
+        checkUserExists(userId);
+        feedEventWriter.awaitWritten(userId);
+        int visibleEventId = feedEventWriter.visibleEventId();
+        return feedStorage.findAllByUserId(userId).stream()
+                .filter(event -> event.getEventId() <= visibleEventId)
+                .toList();
     }
 
+    /**
+     * Получить страницу ленты пользователя после события с id sinceEventId. События, записанные раньше
+     * события с меньшим id, не возвращаются, пока не записано и оно, чтобы курсор его не перескочил
+     */
+    public List<FeedEvent> getFeedPage(Integer userId, Integer sinceEventId, Integer limit) {
+        checkUserExists(userId);
+        feedEventWriter.awaitWritten(userId);
+        return feedStorage.findByUserId(userId, sinceEventId, feedEventWriter.visibleEventId(), limit);
+    }
+
+    /**
+     * Получить последние события друзей пользователя, от новых к старым
+     */
+    public List<FeedEvent> getFriendsFeed(Integer userId, Integer limit) {
+        checkUserExists(userId);
+        return friendsTimeline.get(userId, limit);
+    }
+
+    /**
+     * Подписаться на новые события ленты пользователя. С lastEventId сначала отправляются события после него
+     */
+    public SseEmitter streamFeed(Integer userId, Integer lastEventId) {
+        checkUserExists(userId);
+        return feedBroadcaster.subscribe(userId, lastEventId);
+    }
+
+    /**
+     * Создать событие ленты. Событие записывается в БД асинхронно после фиксации текущей транзакции,
+     * но сразу видно в ленте его пользователя. Внутри транзакции id событию назначается при фиксации,
+     * поэтому у возвращённого события eventId ещё null; лента друзей и подписчики получают событие уже с id.
+     */
     public FeedEvent createEvent(Integer userId, Integer entityId, EventType eventType, Operation operation) {
         FeedEvent event = new FeedEvent();
         event.setUserId(userId);
@@ -31,6 +74,15 @@ public class FeedService {
         event.setEventType(eventType);
         event.setOperation(operation);
 
-        return feedStorage.create(event);
+        FeedEvent created = feedEventWriter.append(event);
+        friendsTimeline.onEventCreated(created);
+        feedBroadcaster.publish(created);
+        return created;
+    }
+
+    private void checkUserExists(Integer userId) {
+        if (!userCache.exists(userId)) {
+            throw new NotFoundException("Пользователь с id " + userId + " не найден");
+        }
     }
 }
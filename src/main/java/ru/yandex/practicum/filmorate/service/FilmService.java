@@ -3,33 +3,64 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.controller.params.FilmInclude;
 import ru.yandex.practicum.filmorate.controller.params.SearchBy;
+import ru.yandex.practicum.filmorate.controller.params.SearchSortBy;
 import ru.yandex.practicum.filmorate.controller.params.SortBy;
 import ru.yandex.practicum.filmorate.exception.BadRequestException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSuggestion;
 import ru.yandex.practicum.filmorate.model.feed.EventType;
 import ru.yandex.practicum.filmorate.model.feed.Operation;
 import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmCardCache;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.UserLikesBitmapCache;
+import ru.yandex.practicum.filmorate.storage.film.UserSimilarityModel;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class FilmService {
+    private static final int STREAM_PAGE_SIZE = 500;
+    private static final double RELEVANCE_LIKES_WEIGHT = 0.1;
+    private static final Comparator<Film> BY_POPULARITY = Comparator.comparingInt(Film::getLikesCount).reversed()
+            .thenComparing(Film::getId);
+
     private final FilmStorage filmStorage;
     private final UserService userService;
     private final FeedService feedService;
     private final DirectorStorage directorStorage;
+    private final FilmPopularityIndex popularityIndex;
+    private final UserSimilarityModel similarityModel;
+    private final UserLikesBitmapCache likesCache;
+    private final FilmSearchIndex searchIndex;
+    private final FilmCardCache filmCardCache;
 
     /**
      * Создать фильм
      */
     public Film createFilm(Film film) {
+        checkDirectorsExist(film);
         Film createdFilm = filmStorage.create(film);
+        popularityIndex.onFilmSaved(createdFilm);
+        searchIndex.onFilmSaved(createdFilm);
         log.info("Создан фильм: id={}, name={}", createdFilm.getId(), createdFilm.getName());
         return createdFilm;
     }
@@ -38,7 +69,11 @@ public class FilmService {
      * Обновить фильм
      */
     public Film updateFilm(Film film) {
+        checkDirectorsExist(film);
         Film updatedFilm = filmStorage.update(film);
+        filmCardCache.invalidate(updatedFilm.getId());
+        popularityIndex.onFilmSaved(updatedFilm);
+        searchIndex.onFilmSaved(updatedFilm);
         log.info("Обновлён фильм: id={}, name={}", updatedFilm.getId(), updatedFilm.getName());
         return updatedFilm;
     }
@@ -51,85 +86,211 @@ public class FilmService {
     }
 
     /**
-     * Получить фильм по ID
+     * Получить страницу фильмов после фильма с id afterId
      */
-    public Film getFilmById(Integer id) {
-        return filmStorage.findById(id);
+    public List<Film> getFilmsPage(Integer afterId, Integer limit) {
+        return filmStorage.findAll(afterId, limit);
     }
 
     /**
-     * Поставить лайк фильму
+     * Передать все фильмы потребителю постранично, не загружая таблицу в память целиком
      */
-    public void addLike(Integer filmId, Integer userId) {
-        userService.getUserById(userId); // Проверяем существование пользователя
-        filmStorage.addLike(filmId, userId);
+    public void streamAllFilms(Set<FilmInclude> include, Consumer<Film> consumer) {
+        Integer afterId = null;
+        List<Film> page;
+        do {
+            page = applyIncludes(filmStorage.findAll(afterId, STREAM_PAGE_SIZE), include);
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                afterId = page.getLast().getId();
+            }
+        } while (page.size() == STREAM_PAGE_SIZE);
+    }
+
+    /**
+     * Получить фильм по ID из кеша карточек
+     */
+    public Film getFilmById(Integer id) {
+        return filmCardCache.get(id);
+    }
 
-        Film film = filmStorage.findById(filmId);
-        log.info("Пользователь {} поставил лайк фильму {} (всего лайков: {})",
-                userId, filmId, film.getLikes().size());
+    /**
+     * Проверить существование фильма, не загружая его карточку
+     *
+     * @throws NotFoundException если фильма нет
+     */
+    public void checkFilmExists(Integer id) {
+        if (!filmCardCache.exists(id)) {
+            throw new NotFoundException("Фильм с id " + id + " не найден");
+        }
+    }
 
+    /**
+     * Поставить лайк фильму.
+     * Событие ленты и индексы в памяти обновляются только после фиксации транзакции с лайком;
+     * существование фильма и пользователя проверяет хранилище, фильм после записи повторно не читается.
+     */
+    @Transactional
+    public void addLike(Integer filmId, Integer userId) {
+        boolean added = filmStorage.addLike(filmId, userId);
         feedService.createEvent(userId, filmId, EventType.LIKE, Operation.ADD);
+
+        if (added) {
+            afterCommit(() -> onLikeChanged(filmId, userId, true));
+        }
+        log.info("Пользователь {} поставил лайк фильму {}", userId, filmId);
     }
 
     /**
      * Удалить лайк
      */
+    @Transactional
     public void removeLike(Integer filmId, Integer userId) {
-        userService.getUserById(userId); // Проверяем существование пользователя
-        filmStorage.removeLike(filmId, userId);
-
-        Film film = filmStorage.findById(filmId);
-        log.info("Пользователь {} удалил лайк у фильма {} (осталось лайков: {})",
-                userId, filmId, film.getLikes().size());
-
+        boolean removed = filmStorage.removeLike(filmId, userId);
         feedService.createEvent(userId, filmId, EventType.LIKE, Operation.REMOVE);
+
+        if (removed) {
+            afterCommit(() -> onLikeChanged(filmId, userId, false));
+        }
+        log.info("Пользователь {} удалил лайк у фильма {}", userId, filmId);
     }
 
     /**
-     * Получить список из первых count фильмов по количеству лайков
+     * Получить список из первых count фильмов по количеству лайков.
+     * Порядок фильмов берётся из индекса популярности, из БД загружаются только карточки фильмов.
      */
     public List<Film> getPopularFilms(Integer count, Integer year, Integer genreId) {
-        return filmStorage.findPopularFilms(count, year, genreId);
+        return filmStorage.findAllByIds(popularityIndex.top(count, year, genreId));
     }
 
     /**
-     * Получить список общих лайкнутых фильмов 2-ух пользователей
+     * Получить список общих лайкнутых фильмов 2-ух пользователей.
+     * Общие фильмы — пересечение битовых карт лайков из кэша, из БД загружаются только карточки фильмов.
      */
     public List<Film> getCommonFilms(Integer userId, Integer friendId) {
-        userService.getUserById(userId);
-        userService.getUserById(friendId);
+        userService.checkUserExists(userId);
+        userService.checkUserExists(friendId);
         log.info("Запрос на общие фильмы пользователей {} и {}", userId, friendId);
-        return filmStorage.getCommonFilms(userId, friendId);
+
+        List<Integer> filmIds = Arrays.stream(likesCache.commonFilms(userId, friendId)).boxed().toList();
+        List<Film> films = new ArrayList<>(filmStorage.findAllByIds(filmIds));
+        films.sort(BY_POPULARITY);
+        return films;
     }
 
     public List<Film> getFilmsByDirector(Integer directorid, SortBy sortBy) {
-        if (!directorStorage.isDirectorPresent(directorid)) {
+        if (!directorStorage.exists(directorid)) {
             throw new NotFoundException("Режиссер с id " + directorid + " не найден");
         }
         return filmStorage.getFilmsByDirector(directorid, sortBy);
     }
 
     /**
-     * Получить рекомендации по фильмам для пользователя
+     * Получить рекомендации по фильмам для пользователя.
+     * Список фильмов берётся из модели похожести пользователей, из БД загружаются только карточки фильмов.
      */
     public List<Film> getRecommendations(Integer userId) {
-        userService.getUserById(userId); // Проверяем существование пользователя
+        userService.checkUserExists(userId);
         log.info("Запрос рекомендаций для пользователя {}", userId);
-        return filmStorage.getRecommendations(userId);
+        return filmStorage.findAllByIds(similarityModel.recommend(userId));
     }
 
-    public List<Film> searchFilm(String searchQuery, Set<SearchBy> searchParams) {
+    /**
+     * Найти фильмы по подстроке в названии и/или имени режиссёра.
+     * Подходящие фильмы находит поисковый индекс в памяти, из БД загружаются только их карточки.
+     * При сортировке по релевантности оценка фильма — качество совпадения (от 0 до 1) плюс
+     * {@link #RELEVANCE_LIKES_WEIGHT} * ln(1 + количество лайков).
+     */
+    public List<Film> searchFilm(String searchQuery, Set<SearchBy> searchParams, SearchSortBy sortBy) {
         if (searchParams.isEmpty()) {
             throw new BadRequestException("Параметр by не может быть пустым");
         }
         if (searchQuery == null || searchQuery.isBlank()) {
             throw new BadRequestException("Неверно передана строка поиска");
         }
-        return filmStorage.searchFilm(searchQuery, searchParams);
+
+        List<FilmSearchIndex.Match> matches = searchIndex.search(searchQuery,
+                searchParams.contains(SearchBy.TITLE), searchParams.contains(SearchBy.DIRECTOR));
+        Map<Integer, Double> qualityByFilm = new HashMap<>();
+        for (FilmSearchIndex.Match match : matches) {
+            qualityByFilm.put(match.filmId(), match.quality());
+        }
+
+        List<Film> films = new ArrayList<>(filmStorage.findAllByIds(new ArrayList<>(qualityByFilm.keySet())));
+        if (sortBy == SearchSortBy.relevance) {
+            films.sort(Comparator.comparingDouble((Film film) -> qualityByFilm.get(film.getId())
+                            + RELEVANCE_LIKES_WEIGHT * Math.log1p(film.getLikesCount())).reversed()
+                    .thenComparing(Film::getId));
+        } else {
+            films.sort(BY_POPULARITY);
+        }
+        return films;
+    }
+
+    /**
+     * Подсказки для поиска по мере ввода из индекса в памяти, без обращения к БД
+     */
+    public List<FilmSuggestion> suggestFilms(String searchQuery, int limit) {
+        if (searchQuery == null || searchQuery.isBlank()) {
+            throw new BadRequestException("Неверно передана строка поиска");
+        }
+        return searchIndex.suggest(searchQuery, limit);
+    }
+
+    /**
+     * Догрузить в фильмы дополнительные данные, запрошенные параметром include.
+     * Без параметра фильмы возвращаются только с количеством лайков.
+     */
+    public List<Film> applyIncludes(List<Film> films, Set<FilmInclude> include) {
+        if (include != null && include.contains(FilmInclude.likes)) {
+            filmStorage.loadLikes(films);
+        }
+        return films;
     }
 
     public void deleteFilm(Integer filmId) {
         log.info("Удаление фильма с id {}", filmId);
         filmStorage.delete(filmId);
+        filmCardCache.invalidate(filmId);
+        popularityIndex.onFilmDeleted(filmId);
+        similarityModel.onFilmDeleted(filmId);
+        likesCache.onFilmDeleted(filmId);
+        searchIndex.onFilmDeleted(filmId);
+    }
+
+    /**
+     * Проверяет режиссёров фильма одним запросом до записи, а не по нарушению внешнего ключа.
+     */
+    private void checkDirectorsExist(Film film) {
+        if (film.getDirectors() == null || film.getDirectors().isEmpty()) {
+            return;
+        }
+        List<Integer> directorIds = film.getDirectors().stream().map(Director::getId).toList();
+        if (!directorStorage.existsAll(directorIds)) {
+            throw new NotFoundException("Режиссер не найден");
+        }
+    }
+
+    /**
+     * Обновляет индексы лайков в памяти. Вызывается после фиксации транзакции: иначе откат оставил бы
+     * в индексах несуществующий лайк, а ленивая загрузка до фиксации закешировала бы данные без него.
+     */
+    private void onLikeChanged(int filmId, int userId, boolean added) {
+        popularityIndex.onLikeChanged(filmId, added ? 1 : -1);
+        similarityModel.onLikeChanged(filmId, userId, added);
+        likesCache.onLikeChanged(filmId, userId, added);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
     }
 }
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.review.ReviewStorage;
+
+/**
+ * Одноразовая задача, которая при старте приложения пересчитывает денормализованные
+ * счётчик films.likes_count по таблице film_likes и рейтинг reviews.useful по таблице review_ratings
+ * и тем самым устраняет возможные расхождения.
+ * <p>
+ * Включается свойством {@code filmorate.likes-count.reconcile-on-startup=true}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "filmorate.likes-count.reconcile-on-startup", havingValue = "true")
+public class LikesCountReconciliationJob implements ApplicationRunner {
+    private final FilmStorage filmStorage;
+    private final ReviewStorage reviewStorage;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.currentTimeMillis();
+        int fixed = filmStorage.reconcileLikesCount();
+        log.info("Сверка счётчиков лайков завершена за {} мс, исправлено фильмов: {}",
+                System.currentTimeMillis() - start, fixed);
+
+        start = System.currentTimeMillis();
+        int fixedReviews = reviewStorage.reconcileUseful();
+        log.info("Сверка рейтингов полезности отзывов завершена за {} мс, исправлено отзывов: {}",
+                System.currentTimeMillis() - start, fixedReviews);
+    }
+}
@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.UserSimilarityModel;
+
+/**
+ * Фоновые задачи модели похожести пользователей.
+ * <p>
+ * Соседи пользователей, помеченных устаревшими после изменения лайков, пересчитываются с периодом
+ * {@code filmorate.recommendations.refresh-interval}. Полный параллельный пересчёт модели из БД
+ * выполняется по расписанию {@code filmorate.recommendations.rebuild-cron}, по умолчанию отключён.
+ */
+@Component
+@RequiredArgsConstructor
+public class RecommendationRefreshJob {
+    private final UserSimilarityModel similarityModel;
+
+    @Scheduled(fixedDelayString = "${filmorate.recommendations.refresh-interval:PT1S}")
+    public void refreshStale() {
+        similarityModel.refreshStale();
+    }
+
+    @Scheduled(cron = "${filmorate.recommendations.rebuild-cron:-}")
+    public void rebuild() {
+        similarityModel.rebuild();
+    }
+}
@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.model.feed.EventType;
@@ -23,10 +24,11 @@ public class ReviewService {
     /**
      * Создать отзыв
      */
+    @Transactional
     public Review createReview(Review review) {
         // Проверяем существование пользователя и фильма
-        userService.getUserById(review.getUserId());
-        filmService.getFilmById(review.getFilmId());
+        userService.checkUserExists(review.getUserId());
+        filmService.checkFilmExists(review.getFilmId());
 
         Review createdReview = reviewStorage.create(review);
         log.info("Создан отзыв: id={}, filmId={}, userId={}",
@@ -40,6 +42,7 @@ public class ReviewService {
     /**
      * Обновить отзыв
      */
+    @Transactional
     public Review updateReview(Review review) {
         if (review.getReviewId() == null) {
             throw new ValidationException("ID отзыва должен быть указан");
@@ -55,6 +58,7 @@ public class ReviewService {
     /**
      * Удалить отзыв
      */
+    @Transactional
     public void deleteReview(Integer reviewId) {
         Review reviewToDelete = getReviewById(reviewId);
         reviewStorage.delete(reviewId);
@@ -80,7 +84,7 @@ public class ReviewService {
 
         if (filmId != null) {
             // Проверяем существование фильма
-            filmService.getFilmById(filmId);
+            filmService.checkFilmExists(filmId);
         }
 
         return reviewStorage.findByFilmId(filmId, limit);
@@ -90,47 +94,35 @@ public class ReviewService {
      * Поставить лайк отзыву
      */
     public void addLike(Integer reviewId, Integer userId) {
-        userService.getUserById(userId); // Проверяем существование пользователя
+        userService.checkUserExists(userId);
         reviewStorage.addLike(reviewId, userId);
-
-        Integer useful = reviewStorage.getUsefulRating(reviewId);
-        log.info("Пользователь {} поставил лайк отзыву {} (рейтинг: {})",
-                userId, reviewId, useful);
+        log.info("Пользователь {} поставил лайк отзыву {}", userId, reviewId);
     }
 
     /**
      * Поставить дизлайк отзыву
      */
     public void addDislike(Integer reviewId, Integer userId) {
-        userService.getUserById(userId); // Проверяем существование пользователя
+        userService.checkUserExists(userId);
         reviewStorage.addDislike(reviewId, userId);
-
-        Integer useful = reviewStorage.getUsefulRating(reviewId);
-        log.info("Пользователь {} поставил дизлайк отзыву {} (рейтинг: {})",
-                userId, reviewId, useful);
+        log.info("Пользователь {} поставил дизлайк отзыву {}", userId, reviewId);
     }
 
     /**
      * Удалить лайк у отзыва
      */
     public void removeLike(Integer reviewId, Integer userId) {
-        userService.getUserById(userId); // Проверяем существование пользователя
+        userService.checkUserExists(userId);
         reviewStorage.removeLike(reviewId, userId);
-
-        Integer useful = reviewStorage.getUsefulRating(reviewId);
-        log.info("Пользователь {} удалил лайк у отзыва {} (рейтинг: {})",
-                userId, reviewId, useful);
+        log.info("Пользователь {} удалил лайк у отзыва {}", userId, reviewId);
     }
 
     /**
      * Удалить дизлайк у отзыва
      */
     public void removeDislike(Integer reviewId, Integer userId) {
-        userService.getUserById(userId); // Проверяем существование пользователя
+        userService.checkUserExists(userId);
         reviewStorage.removeDislike(reviewId, userId);
-
-        Integer useful = reviewStorage.getUsefulRating(reviewId);
-        log.info("Пользователь {} удалил дизлайк у отзыва {} (рейтинг: {})",
-                userId, reviewId, useful);
+        log.info("Пользователь {} удалил дизлайк у отзыва {}", userId, reviewId);
     }
 }
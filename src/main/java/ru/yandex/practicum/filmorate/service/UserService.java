@@ -3,21 +3,35 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.feed.EventType;
 import ru.yandex.practicum.filmorate.model.feed.Operation;
+import ru.yandex.practicum.filmorate.storage.feed.FriendsTimeline;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.UserLikesBitmapCache;
+import ru.yandex.practicum.filmorate.storage.film.UserSimilarityModel;
+import ru.yandex.practicum.filmorate.storage.user.UserCache;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class UserService {
+    private static final int STREAM_PAGE_SIZE = 500;
+
     private final UserStorage userStorage;
     private final FeedService feedService;
+    private final FilmPopularityIndex popularityIndex;
+    private final UserSimilarityModel similarityModel;
+    private final UserLikesBitmapCache likesCache;
+    private final UserCache userCache;
+    private final FriendsTimeline friendsTimeline;
 
     /**
      * Создать пользователя
@@ -33,6 +47,7 @@ public class UserService {
      */
     public User updateUser(User user) {
         User updatedUser = userStorage.update(user);
+        userCache.invalidate(updatedUser.getId());
         log.info("Обновлён пользователь: id={}, login={}", updatedUser.getId(), updatedUser.getLogin());
         return updatedUser;
     }
@@ -45,15 +60,49 @@ public class UserService {
     }
 
     /**
-     * Получить пользователя по ID
+     * Получить страницу пользователей после пользователя с id afterId
+     */
+    public List<User> getUsersPage(Integer afterId, Integer limit) {
+        return userStorage.findAll(afterId, limit);
+    }
+
+    /**
+     * Передать всех пользователей потребителю постранично, не загружая таблицу в память целиком
+     */
+    public void streamAllUsers(Consumer<User> consumer) {
+        Integer afterId = null;
+        List<User> page;
+        do {
+            page = userStorage.findAll(afterId, STREAM_PAGE_SIZE);
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                afterId = page.getLast().getId();
+            }
+        } while (page.size() == STREAM_PAGE_SIZE);
+    }
+
+    /**
+     * Получить пользователя по ID из кеша пользователей
      */
     public User getUserById(Integer id) {
-        return userStorage.findById(id);
+        return userCache.get(id);
+    }
+
+    /**
+     * Проверить существование пользователя, не загружая его
+     *
+     * @throws NotFoundException если пользователя нет
+     */
+    public void checkUserExists(Integer id) {
+        if (!userCache.exists(id)) {
+            throw new NotFoundException("Пользователь с id " + id + " не найден");
+        }
     }
 
     /**
      * Добавить пользователя в друзья
      */
+    @Transactional
     public void addFriend(Integer userId, Integer friendId) {
         if (userId.equals(friendId)) {
             log.warn("Попытка добавить себя в друзья: userId={}", userId);
@@ -61,6 +110,8 @@ public class UserService {
         }
 
         userStorage.addFriend(userId, friendId);
+        userCache.invalidate(userId, friendId);
+        friendsTimeline.onFriendshipChanged(userId, friendId);
         log.info("Пользователи {} и {} стали друзьями", userId, friendId);
 
         feedService.createEvent(userId, friendId, EventType.FRIEND, Operation.ADD);
@@ -69,8 +120,11 @@ public class UserService {
     /**
      * Удалить пользователя из друзей
      */
+    @Transactional
     public void removeFriend(Integer userId, Integer friendId) {
         userStorage.removeFriend(userId, friendId);
+        userCache.invalidate(userId, friendId);
+        friendsTimeline.onFriendshipChanged(userId, friendId);
         log.info("Пользователи {} и {} больше не друзья", userId, friendId);
         feedService.createEvent(userId, friendId, EventType.FRIEND, Operation.REMOVE);
     }
@@ -79,30 +133,27 @@ public class UserService {
      * Получить список друзей пользователя
      */
     public List<User> getFriends(Integer userId) {
-        User user = userStorage.findById(userId);
-        return user.getFriends().keySet().stream()
-                .map(userStorage::findById)
-                .collect(Collectors.toList());
+        return userCache.getAll(Arrays.stream(userCache.friendIds(userId)).boxed().toList());
     }
 
     /**
      * Получить список общих друзей
      */
     public List<User> getCommonFriends(Integer userId, Integer otherUserId) {
-        User user = userStorage.findById(userId);
-        User otherUser = userStorage.findById(otherUserId);
-
-        Set<Integer> commonFriendsIds = user.getFriends().keySet().stream()
-                .filter(otherUser.getFriends().keySet()::contains)
-                .collect(Collectors.toSet());
-
-        return commonFriendsIds.stream()
-                .map(userStorage::findById)
-                .collect(Collectors.toList());
+        return userCache.commonFriends(userId, otherUserId);
     }
 
     public void deleteUser(Integer userId) {
-        userStorage.delete(userId);
+        // Дружбы удаляются каскадно, поэтому друзей нужно узнать до удаления
+        int[] friendIds = userCache.friendIds(userId);
+        List<Integer> likedFilmIds = userStorage.delete(userId);
+        userCache.onUserDeleted(userId);
         log.info("Удалён пользователь: id={}", userId);
+
+        // Лайки пользователя удалены каскадно: снимаем их с фильмов в индексе популярности
+        likedFilmIds.forEach(filmId -> popularityIndex.onLikeChanged(filmId, -1));
+        similarityModel.onUserDeleted(userId);
+        likesCache.onUserDeleted(userId);
+        friendsTimeline.onUserDeleted(userId, friendIds);
     }
 }
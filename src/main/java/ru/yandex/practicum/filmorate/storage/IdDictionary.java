@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Неизменяемый справочник небольших объектов с плотными положительными id (жанры, рейтинги MPA).
+ * <p>
+ * Объекты лежат в массиве по индексу, равному id, поэтому поиск по id — одно обращение к массиву,
+ * а все фильмы ссылаются на одни и те же экземпляры. Экземпляры общие и не должны изменяться.
+ */
+public final class IdDictionary<T> {
+
+    private final Object[] byId;
+    private final List<T> values;
+
+    private IdDictionary(Object[] byId, List<T> values) {
+        this.byId = byId;
+        this.values = values;
+    }
+
+    public static <T> IdDictionary<T> empty() {
+        return new IdDictionary<>(new Object[0], List.of());
+    }
+
+    /**
+     * @param values объекты справочника в порядке, в котором их возвращает {@link #values()}
+     * @param idOf   функция, возвращающая id объекта
+     */
+    public static <T> IdDictionary<T> of(List<T> values, ToIntFunction<T> idOf) {
+        int maxId = values.stream().mapToInt(idOf).max().orElse(0);
+        Object[] byId = new Object[maxId + 1];
+        for (T value : values) {
+            byId[idOf.applyAsInt(value)] = value;
+        }
+        return new IdDictionary<>(byId, List.copyOf(values));
+    }
+
+    /**
+     * @return объект с данным id или null, если его нет в справочнике
+     */
+    @SuppressWarnings("unchecked")
+    public T get(Integer id) {
+        if (id == null || id < 0 || id >= byId.length) {
+            return null;
+        }
+        return (T) byId[id];
+    }
+
+    public List<T> values() {
+        return values;
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlParameterValue;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
@@ -12,6 +13,8 @@ import ru.yandex.practicum.filmorate.model.Director;
 
 import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.sql.Types;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -90,8 +93,20 @@ public class DirectorDbStorage implements DirectorStorage {
     }
 
     @Override
-    public boolean isDirectorPresent(Integer id) {
-        return getDirectorById(id).isPresent();
+    public boolean exists(Integer id) {
+        String sql = "SELECT EXISTS (SELECT 1 FROM directors WHERE director_id = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, id));
+    }
+
+    @Override
+    public boolean existsAll(Collection<Integer> ids) {
+        Integer[] distinctIds = ids.stream().distinct().toArray(Integer[]::new);
+        if (distinctIds.length == 0) {
+            return true;
+        }
+        String sql = "SELECT COUNT(*) FROM directors WHERE director_id = ANY(?)";
+        Integer found = jdbcTemplate.queryForObject(sql, Integer.class, new SqlParameterValue(Types.ARRAY, distinctIds));
+        return found != null && found == distinctIds.length;
     }
 
     private RowMapper<Director> getDirectorRowMapper() {
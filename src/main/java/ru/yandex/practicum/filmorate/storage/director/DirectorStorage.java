@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.storage.director;
 
 import ru.yandex.practicum.filmorate.model.Director;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,5 +18,10 @@ public interface DirectorStorage {
 
     void deleteDirector(Integer id);
 
-    boolean isDirectorPresent(Integer id);
+    boolean exists(Integer id);
+
+    /**
+     * @return true, если существуют режиссёры со всеми указанными id
+     */
+    boolean existsAll(Collection<Integer> ids);
 }
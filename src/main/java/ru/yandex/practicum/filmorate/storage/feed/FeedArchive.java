@@ -0,0 +1,179 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.feed.FeedEvent;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Архив удалённых из ленты событий на локальном диске.
+ * <p>
+ * События пишутся в сегменты {@code feed-<время>.ndjson.gz} в каталоге {@code filmorate.feed.retention.archive-dir}
+ * по одному JSON-объекту на строку. Сегмент только дописывается: каждый пакет добавляется отдельным членом gzip
+ * и сбрасывается на диск до удаления событий из БД, поэтому удалённое событие не теряется. Если запись пакета
+ * прервалась, недописанный хвост сегмента пропускается при восстановлении.
+ * <p>
+ * Восстановление записывает события сегмента обратно в ленту с исходными id и временем создания и может
+ * повторяться без дублей. Восстановленные события отмечаются временем восстановления, по которому
+ * {@link FeedRetention} не удаляет их в течение {@code restore-window}.
+ * События удалённых пользователей пропускаются. С пустым {@code archive-dir} архив отключён.
+ */
+@Slf4j
+@Component
+public class FeedArchive {
+
+    private static final String SEGMENT_PREFIX = "feed-";
+    private static final String SEGMENT_SUFFIX = ".ndjson.gz";
+    private static final DateTimeFormatter SEGMENT_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    private static final int RESTORE_BATCH_SIZE = 500;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FeedStorage feedStorage;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+
+    public FeedArchive(FeedStorage feedStorage, ObjectMapper objectMapper,
+                       @Value("${filmorate.feed.retention.archive-dir:}") String directory) {
+        this.feedStorage = feedStorage;
+        this.objectMapper = objectMapper;
+        this.directory = directory.isBlank() ? null : Path.of(directory).toAbsolutePath().normalize();
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Путь нового сегмента. Файл создаётся при записи первого пакета.
+     */
+    public Path newSegment() {
+        return directory.resolve(SEGMENT_PREFIX + LocalDateTime.now().format(SEGMENT_TIME) + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Дописывает пакет событий в сегмент и дожидается записи на диск.
+     */
+    public void append(Path segment, List<FeedEvent> events) {
+        try {
+            Files.createDirectories(segment.getParent());
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND)) {
+                GZIPOutputStream gzip = new GZIPOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel)), BUFFER_SIZE);
+                for (FeedEvent event : events) {
+                    gzip.write(objectMapper.writeValueAsBytes(event));
+                    gzip.write('\n');
+                }
+                gzip.finish();
+                gzip.flush();
+                channel.force(true);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать события ленты в архив " + segment, e);
+        }
+    }
+
+    /**
+     * Имена сегментов архива в порядке создания.
+     */
+    public List<String> segments() {
+        if (directory == null || !Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать каталог архива " + directory, e);
+        }
+    }
+
+    /**
+     * Восстанавливает события сегмента в ленту.
+     *
+     * @return число восстановленных событий
+     */
+    public int replay(String segmentName) {
+        Path segment = resolve(segmentName);
+        int restored = 0;
+        List<FeedEvent> batch = new ArrayList<>(RESTORE_BATCH_SIZE);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(segment)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    batch.add(objectMapper.readValue(line, FeedEvent.class));
+                }
+                if (batch.size() == RESTORE_BATCH_SIZE) {
+                    restored += restore(batch);
+                    batch.clear();
+                }
+            }
+        } catch (EOFException e) {
+            log.warn("Сегмент архива ленты {} обрывается, недописанный хвост пропущен", segmentName);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать сегмент архива ленты " + segmentName, e);
+        }
+        restored += restore(batch);
+
+        log.info("Из сегмента архива {} восстановлено событий ленты: {}", segmentName, restored);
+        return restored;
+    }
+
+    private int restore(List<FeedEvent> events) {
+        if (events.isEmpty()) {
+            return 0;
+        }
+        try {
+            feedStorage.restoreAll(events);
+            return events.size();
+        } catch (DataIntegrityViolationException e) {
+            int restored = 0;
+            for (FeedEvent event : events) {
+                try {
+                    feedStorage.restoreAll(List.of(event));
+                    restored++;
+                } catch (DataIntegrityViolationException skipped) {
+                    log.debug("Событие ленты {} не восстановлено: {}", event, skipped.getMessage());
+                }
+            }
+            return restored;
+        }
+    }
+
+    private Path resolve(String segmentName) {
+        if (directory == null) {
+            throw new NotFoundException("Архив ленты отключён");
+        }
+        // Имя ищется среди файлов каталога, поэтому путь за пределами архива не пройдёт
+        if (!segments().contains(segmentName)) {
+            throw new NotFoundException("Сегмент архива ленты " + segmentName + " не найден");
+        }
+        return directory.resolve(segmentName);
+    }
+}
@@ -5,15 +5,16 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.jdbc.core.SqlParameterValue;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.feed.EventType;
 import ru.yandex.practicum.filmorate.model.feed.FeedEvent;
 import ru.yandex.practicum.filmorate.model.feed.Operation;
 
-import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.Collection;
 import java.util.List;
 
@@ -36,25 +37,32 @@ public class FeedDbStorage implements FeedStorage {
 
     private final JdbcTemplate jdbcTemplate;
 
+    /**
+     * Сохраняет события одной пакетной вставкой в одной транзакции. Id и время событий назначает
+     * {@link FeedEventWriter}, поэтому ключи после вставки не читаются.
+     */
     @Override
-    public FeedEvent create(FeedEvent event) {
-
-        String sql = "INSERT INTO feed (user_id, entity_id, event_type, operation) VALUES (?, ?, ?, ?)";
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-
-        jdbcTemplate.update(connection -> {
-            PreparedStatement ps = connection.prepareStatement(sql, new String[]{"event_id"});
-            ps.setInt(1, event.getUserId());
-            ps.setInt(2, event.getEntityId());
-            ps.setString(3, event.getEventType().toString());
-            ps.setString(4, event.getOperation().toString());
-            return ps;
-        }, keyHolder);
-
-        event.setEventId(keyHolder.getKey().intValue());
+    @Transactional
+    public void createAll(List<FeedEvent> events) {
+        String sql = "INSERT INTO feed (event_id, user_id, entity_id, event_type, operation, created_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?)";
+
+        jdbcTemplate.batchUpdate(sql, events, events.size(), (ps, event) -> {
+            ps.setInt(1, event.getEventId());
+            ps.setInt(2, event.getUserId());
+            ps.setInt(3, event.getEntityId());
+            ps.setString(4, event.getEventType().toString());
+            ps.setString(5, event.getOperation().toString());
+            ps.setTimestamp(6, new Timestamp(event.getTimestamp()));
+        });
+
+        log.debug("Записано событий ленты: {}", events.size());
+    }
 
-        log.debug("Создано событие с id: {}", event.getEventId());
-        return findByEventId(event.getEventId());
+    @Override
+    public int maxEventId() {
+        Integer maxEventId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(event_id), 0) FROM feed", Integer.class);
+        return maxEventId == null ? 0 : maxEventId;
     }
 
     @Override
@@ -70,9 +78,13 @@ public class FeedDbStorage implements FeedStorage {
         return events.getFirst();
     }
 
+    /**
+     * Возвращает все события пользователя в порядке их создания. Порядок задаётся по event_id, а не по
+     * created_at: id выдаются по возрастанию, а сортировку даёт индекс (user_id, event_id).
+     */
     @Override
     public Collection<FeedEvent> findAllByUserId(Integer userId) {
-        String sql = BASE_SELECT + "\nWHERE user_id = ?\nORDER BY f.created_at ASC";
+        String sql = BASE_SELECT + "\nWHERE user_id = ?\nORDER BY f.event_id";
 
         List<FeedEvent> events = jdbcTemplate.query(sql, eventRowMapper(), userId);
 
@@ -81,6 +93,111 @@ public class FeedDbStorage implements FeedStorage {
         return events;
     }
 
+    /**
+     * Возвращает страницу событий пользователя с id больше sinceEventId (keyset pagination по индексу
+     * (user_id, event_id)), поэтому стоимость запроса зависит от размера страницы, а не от длины истории.
+     *
+     * @param sinceEventId id последнего события предыдущей страницы или null для первой страницы
+     * @param untilEventId наибольший id, который можно вернуть
+     * @param limit        максимальный размер страницы
+     */
+    @Override
+    public List<FeedEvent> findByUserId(Integer userId, Integer sinceEventId, int untilEventId, int limit) {
+        String sql = BASE_SELECT + "\nWHERE user_id = ? AND event_id > ? AND event_id <= ?\nORDER BY f.event_id\nLIMIT ?";
+
+        List<FeedEvent> events = jdbcTemplate.query(sql, eventRowMapper(), userId,
+                sinceEventId == null ? 0 : sinceEventId, untilEventId, limit);
+
+        log.debug("Получена страница событий пользователя {} после id {}, количество: {}", userId, sinceEventId,
+                events.size());
+        return events;
+    }
+
+    /**
+     * Возвращает последние события нескольких пользователей, от новых к старым.
+     */
+    @Override
+    public List<FeedEvent> findRecentByUserIds(Collection<Integer> userIds, int limit) {
+        String sql = BASE_SELECT + "\nWHERE user_id = ANY(?)\nORDER BY f.event_id DESC\nLIMIT ?";
+
+        List<FeedEvent> events = jdbcTemplate.query(sql, eventRowMapper(),
+                new SqlParameterValue(Types.ARRAY, userIds.toArray(Integer[]::new)), limit);
+
+        log.debug("Получены последние события {} пользователей, количество: {}", userIds.size(), events.size());
+        return events;
+    }
+
+    /**
+     * Возвращает самые старые события, созданные раньше timestamp. Порядок по event_id даёт первичный ключ,
+     * поэтому запрос останавливается, набрав limit старых событий в начале таблицы.
+     */
+    @Override
+    public List<FeedEvent> findCreatedBefore(long timestamp, long restoredBefore, int limit) {
+        String sql = BASE_SELECT + """
+                WHERE f.created_at < ? AND (f.restored_at IS NULL OR f.restored_at < ?)
+                ORDER BY f.event_id
+                LIMIT ?
+                """;
+
+        return jdbcTemplate.query(sql, eventRowMapper(), new Timestamp(timestamp), new Timestamp(restoredBefore),
+                limit);
+    }
+
+    @Override
+    public List<Integer> findUserIdsWithMoreEventsThan(int count) {
+        String sql = "SELECT user_id FROM feed GROUP BY user_id HAVING COUNT(*) > ? ORDER BY user_id";
+
+        return jdbcTemplate.queryForList(sql, Integer.class, count);
+    }
+
+    /**
+     * Возвращает самые старые события пользователя сверх keep последних, не больше limit.
+     * События, восстановленные не раньше restoredBefore, не возвращаются.
+     */
+    @Override
+    public List<FeedEvent> findExcessByUserId(Integer userId, int keep, long restoredBefore, int limit) {
+        String sql = BASE_SELECT + """
+                WHERE f.user_id = ? AND f.event_id <= (
+                    SELECT event_id FROM feed WHERE user_id = ? ORDER BY event_id DESC LIMIT 1 OFFSET ?
+                ) AND (f.restored_at IS NULL OR f.restored_at < ?)
+                ORDER BY f.event_id
+                LIMIT ?
+                """;
+
+        return jdbcTemplate.query(sql, eventRowMapper(), userId, userId, keep, new Timestamp(restoredBefore), limit);
+    }
+
+    @Override
+    public int deleteAll(Collection<Integer> eventIds) {
+        int deleted = jdbcTemplate.update("DELETE FROM feed WHERE event_id = ANY(?)",
+                new SqlParameterValue(Types.ARRAY, eventIds.toArray(Integer[]::new)));
+
+        log.debug("Удалено событий ленты: {}", deleted);
+        return deleted;
+    }
+
+    /**
+     * Восстанавливает события с их исходными id и временем создания и отмечает время восстановления.
+     * Уже существующие события перезаписываются, поэтому повторное восстановление не создаёт дублей.
+     */
+    @Override
+    @Transactional
+    public void restoreAll(List<FeedEvent> events) {
+        String sql = "MERGE INTO feed (event_id, user_id, entity_id, event_type, operation, created_at, restored_at) " +
+                "KEY (event_id) VALUES (?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)";
+
+        jdbcTemplate.batchUpdate(sql, events, events.size(), (ps, event) -> {
+            ps.setInt(1, event.getEventId());
+            ps.setInt(2, event.getUserId());
+            ps.setInt(3, event.getEntityId());
+            ps.setString(4, event.getEventType().toString());
+            ps.setString(5, event.getOperation().toString());
+            ps.setTimestamp(6, new Timestamp(event.getTimestamp()));
+        });
+
+        log.debug("Восстановлено событий ленты: {}", events.size());
+    }
+
     private RowMapper<FeedEvent> eventRowMapper() {
         return (rs, rowNum) -> {
             FeedEvent event = new FeedEvent();
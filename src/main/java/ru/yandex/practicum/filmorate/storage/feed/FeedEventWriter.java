@@ -0,0 +1,318 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.feed.FeedEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Асинхронная пакетная запись событий ленты.
+ * <p>
+ * Событие сразу получает время, а id и место в очереди — только после фиксации транзакции, в которой оно создано:
+ * событие кладётся в ограниченный кольцевой буфер ({@link ArrayBlockingQueue}), и отдельный поток
+ * {@code feed-writer} записывает буфер пакетной вставкой JDBC раз в {@code flush-interval} или сразу,
+ * как только накопилось {@code batch-size} событий. При откате транзакции событие не записывается и id не получает.
+ * Каждый пакет пишется в собственной транзакции, поэтому буфер можно записать и из afterCommit вызывающего потока.
+ * <p>
+ * Если буфер заполнен или последняя запись не удалась, новые события не копятся в памяти, а пишутся синхронно
+ * в транзакции вызывающего кода, поэтому отставание или сбой записи не увеличивает число событий, которые
+ * потеряются при падении приложения: в памяти остаются только события последних {@code flush-interval}.
+ * Если пакет не записался, события пишутся по одному: событие удалённого пользователя отбрасывается,
+ * остальные ждут повтора при следующей записи. При остановке приложения буфер записывается целиком.
+ * С {@code filmorate.feed.writer.async=false} все события пишутся синхронно.
+ * <p>
+ * Событие с меньшим id может попасть в БД позже события с большим: при повторе записи или при синхронной
+ * записи в долгой транзакции. Поэтому чтение ленты по курсору ограничивается {@link #visibleEventId()} —
+ * наибольшим id, до которого все события уже записаны, — и курсор читателя не перескакивает незаписанное событие.
+ * <p>
+ * Перед чтением ленты вызывается {@link #awaitWritten(int)}, поэтому пользователь всегда видит свои события.
+ * Id выдаются в памяти, начиная с максимального id в таблице при старте: с таблицей работает одно приложение.
+ */
+@Slf4j
+@Component
+public class FeedEventWriter {
+
+    private final FeedStorage feedStorage;
+    private final TransactionTemplate newTransaction;
+    private final int capacity;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final boolean async;
+
+    private final BlockingQueue<FeedEvent> buffer;
+    private final AtomicInteger lastEventId = new AtomicInteger();
+    // Выданные, но ещё не записанные или не зафиксированные id; добавляются под idLock
+    private final ConcurrentSkipListSet<Integer> unwritten = new ConcurrentSkipListSet<>();
+    private final ConcurrentMap<Integer, Integer> pendingByUser = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ReentrantLock idLock = new ReentrantLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final List<FeedEvent> retries = new ArrayList<>();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder callerFlushes = new LongAdder();
+    private final LongAdder synchronousWrites = new LongAdder();
+    private volatile boolean failing;
+
+    private ScheduledExecutorService executor;
+
+    public FeedEventWriter(FeedStorage feedStorage, PlatformTransactionManager transactionManager,
+                           @Value("${filmorate.feed.writer.capacity:10000}") int capacity,
+                           @Value("${filmorate.feed.writer.batch-size:500}") int batchSize,
+                           @Value("${filmorate.feed.writer.flush-interval:PT0.1S}") Duration flushInterval,
+                           @Value("${filmorate.feed.writer.async:true}") boolean async) {
+        this.feedStorage = feedStorage;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.async = async;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        lastEventId.set(feedStorage.maxEventId());
+        if (async) {
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "feed-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = flushInterval.toMillis();
+            executor.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        log.info("Запись ленты: {}, буфер {} событий, пакет {}, интервал {}",
+                async ? "асинхронная" : "синхронная", capacity, batchSize, flushInterval);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+        flush();
+    }
+
+    /**
+     * Назначает событию время и ставит его в очередь записи после фиксации текущей транзакции.
+     * Если запись отстаёт или не удаётся, событие сразу пишется в текущей транзакции.
+     * <p>
+     * При записи через очередь внутри транзакции eventId заполняется только при фиксации, до того он null.
+     * Обработчики {@code afterCommit}, зарегистрированные после вызова, видят событие уже с id.
+     *
+     * @return то же событие; eventId заполнен, если транзакции нет или событие записано синхронно
+     */
+    public FeedEvent append(FeedEvent event) {
+        event.setTimestamp(System.currentTimeMillis());
+
+        if (!async || failing || buffer.remainingCapacity() == 0) {
+            writeInCurrentTransaction(event);
+        } else if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(event);
+                }
+            });
+        } else {
+            enqueue(event);
+        }
+        return event;
+    }
+
+    /**
+     * Записывает буфер, если в нём есть события пользователя.
+     */
+    public void awaitWritten(int userId) {
+        if (pendingByUser.containsKey(userId)) {
+            flush();
+        }
+    }
+
+    /**
+     * Записывает в БД все накопленные события, начиная с ожидающих повтора.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            if (!retries.isEmpty()) {
+                List<FeedEvent> failed = new ArrayList<>(retries);
+                retries.clear();
+                write(failed);
+            }
+            List<FeedEvent> batch = new ArrayList<>(batchSize);
+            while (buffer.drainTo(batch, batchSize) > 0) {
+                write(batch);
+                batch.clear();
+            }
+            failing = !retries.isEmpty();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public int pending() {
+        return buffer.size() + retries.size();
+    }
+
+    public long written() {
+        return written.sum();
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    public long callerFlushes() {
+        return callerFlushes.sum();
+    }
+
+    public long synchronousWrites() {
+        return synchronousWrites.sum();
+    }
+
+    /**
+     * Наибольший id, до которого включительно все выданные события записаны в БД и зафиксированы.
+     * Чтение ленты по курсору не должно возвращать события с большим id.
+     */
+    public int visibleEventId() {
+        int last = lastEventId.get();
+        Integer firstUnwritten = unwritten.ceiling(Integer.MIN_VALUE);
+        return firstUnwritten == null || firstUnwritten > last ? last : firstUnwritten - 1;
+    }
+
+    /**
+     * Последний выданный id.
+     */
+    public int lastEventId() {
+        return lastEventId.get();
+    }
+
+    private int nextEventId() {
+        idLock.lock();
+        try {
+            // Id попадает в unwritten раньше, чем становится последним выданным: visibleEventId его не пропустит
+            int eventId = lastEventId.get() + 1;
+            unwritten.add(eventId);
+            lastEventId.set(eventId);
+            return eventId;
+        } finally {
+            idLock.unlock();
+        }
+    }
+
+    private void writeInCurrentTransaction(FeedEvent event) {
+        int eventId = nextEventId();
+        event.setEventId(eventId);
+        try {
+            feedStorage.createAll(List.of(event));
+        } catch (RuntimeException e) {
+            unwritten.remove(eventId);
+            throw e;
+        }
+        written.increment();
+        if (async) {
+            synchronousWrites.increment();
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    unwritten.remove(eventId);
+                }
+            });
+        } else {
+            unwritten.remove(eventId);
+        }
+    }
+
+    private void enqueue(FeedEvent event) {
+        event.setEventId(nextEventId());
+        pendingByUser.merge(event.getUserId(), 1, Integer::sum);
+        while (!buffer.offer(event)) {
+            callerFlushes.increment();
+            flush();
+        }
+        if (buffer.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> {
+                    flushRequested.set(false);
+                    flush();
+                });
+            } catch (RejectedExecutionException e) {
+                flushRequested.set(false);
+                flush();
+            }
+        }
+    }
+
+    private void write(List<FeedEvent> batch) {
+        try {
+            newTransaction.executeWithoutResult(status -> feedStorage.createAll(batch));
+            batch.forEach(this::onWritten);
+        } catch (RuntimeException e) {
+            log.warn("Не удалось записать пакет из {} событий ленты, запись по одному: {}", batch.size(),
+                    e.getMessage());
+            batch.forEach(this::writeOne);
+        }
+    }
+
+    private void writeOne(FeedEvent event) {
+        try {
+            newTransaction.executeWithoutResult(status -> feedStorage.createAll(List.of(event)));
+            onWritten(event);
+        } catch (DuplicateKeyException e) {
+            onWritten(event);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Событие ленты {} отброшено: {}", event, e.getMessage());
+            dropped.increment();
+            onDone(event);
+        } catch (RuntimeException e) {
+            if (retries.size() >= capacity) {
+                log.error("Очередь повторов ленты заполнена, событие {} отброшено", retries.getFirst());
+                dropped.increment();
+                onDone(retries.removeFirst());
+            }
+            retries.add(event);
+        }
+    }
+
+    private void onWritten(FeedEvent event) {
+        written.increment();
+        onDone(event);
+    }
+
+    private void onDone(FeedEvent event) {
+        pendingByUser.computeIfPresent(event.getUserId(), (userId, count) -> count > 1 ? count - 1 : null);
+        unwritten.remove(event.getEventId());
+    }
+}
@@ -0,0 +1,120 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.feed.FeedEvent;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Удаление старых событий ленты.
+ * <p>
+ * Удаляются события старше {@code filmorate.feed.retention.max-age} и самые старые события пользователей сверх
+ * {@code filmorate.feed.retention.max-events-per-user} последних; нулевое значение отключает ограничение.
+ * События удаляются пакетами по {@code batch-size}, каждый пакет — отдельным коротким запросом по первичному ключу,
+ * поэтому очистка не держит долгих блокировок и не мешает записи ленты. Если включён {@link FeedArchive},
+ * каждый пакет сначала дописывается в сегмент архива текущего запуска.
+ * <p>
+ * Восстановленные из архива события сохраняют исходное время создания, поэтому без исключения следующий же запуск
+ * удалил бы их снова. События, восстановленные за последние {@code filmorate.feed.retention.restore-window},
+ * не удаляются ни по возрасту, ни по лимиту пользователя.
+ */
+@Slf4j
+@Component
+public class FeedRetention {
+
+    private final FeedStorage feedStorage;
+    private final FeedArchive feedArchive;
+    private final Duration maxAge;
+    private final int maxEventsPerUser;
+    private final int batchSize;
+    private final Duration restoreWindow;
+
+    private final LongAdder pruned = new LongAdder();
+    private volatile RetentionReport lastReport;
+
+    public FeedRetention(FeedStorage feedStorage, FeedArchive feedArchive,
+                         @Value("${filmorate.feed.retention.max-age:P90D}") Duration maxAge,
+                         @Value("${filmorate.feed.retention.max-events-per-user:1000}") int maxEventsPerUser,
+                         @Value("${filmorate.feed.retention.batch-size:1000}") int batchSize,
+                         @Value("${filmorate.feed.retention.restore-window:P30D}") Duration restoreWindow) {
+        this.feedStorage = feedStorage;
+        this.feedArchive = feedArchive;
+        this.maxAge = maxAge;
+        this.maxEventsPerUser = maxEventsPerUser;
+        this.batchSize = batchSize;
+        this.restoreWindow = restoreWindow;
+    }
+
+    public synchronized RetentionReport run() {
+        long start = System.nanoTime();
+        Path segment = feedArchive.isEnabled() ? feedArchive.newSegment() : null;
+        long now = System.currentTimeMillis();
+        long restoredBefore = now - restoreWindow.toMillis();
+
+        int prunedByAge = 0;
+        if (!maxAge.isZero()) {
+            long before = now - maxAge.toMillis();
+            prunedByAge = prune(segment, limit -> feedStorage.findCreatedBefore(before, restoredBefore, limit));
+        }
+
+        int prunedByCap = 0;
+        if (maxEventsPerUser > 0) {
+            for (Integer userId : feedStorage.findUserIdsWithMoreEventsThan(maxEventsPerUser)) {
+                prunedByCap += prune(segment,
+                        limit -> feedStorage.findExcessByUserId(userId, maxEventsPerUser, restoredBefore, limit));
+            }
+        }
+
+        long millis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        String archived = segment != null && prunedByAge + prunedByCap > 0 ? segment.getFileName().toString() : null;
+        lastReport = new RetentionReport(Instant.now(), prunedByAge, prunedByCap, millis, archived);
+        log.info("Очистка ленты завершена за {} мс, удалено событий: по возрасту {}, сверх лимита пользователя {}{}",
+                millis, prunedByAge, prunedByCap, archived == null ? "" : ", архив " + archived);
+        return lastReport;
+    }
+
+    public long pruned() {
+        return pruned.sum();
+    }
+
+    public RetentionReport lastReport() {
+        return lastReport;
+    }
+
+    private int prune(Path segment, IntFunction<List<FeedEvent>> nextBatch) {
+        int total = 0;
+        List<FeedEvent> batch = nextBatch.apply(batchSize);
+        while (!batch.isEmpty()) {
+            if (segment != null) {
+                feedArchive.append(segment, batch);
+            }
+            int deleted = feedStorage.deleteAll(batch.stream().map(FeedEvent::getEventId).toList());
+            total += deleted;
+            pruned.add(deleted);
+            if (deleted == 0) {
+                break;
+            }
+            batch = nextBatch.apply(batchSize);
+        }
+        return total;
+    }
+
+    /**
+     * Итог запуска очистки.
+     *
+     * @param archiveSegment сегмент архива с удалёнными событиями или null, если архив не писался
+     */
+    public record RetentionReport(Instant finishedAt,
+                                  int prunedByAge,
+                                  int prunedByCap,
+                                  long durationMillis,
+                                  String archiveSegment) {
+    }
+}
@@ -3,12 +3,29 @@ package ru.yandex.practicum.filmorate.storage.feed;
 import ru.yandex.practicum.filmorate.model.feed.FeedEvent;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface FeedStorage {
 
-    FeedEvent create(FeedEvent event);
+    void createAll(List<FeedEvent> events);
+
+    int maxEventId();
 
     FeedEvent findByEventId(Integer eventId);
 
     Collection<FeedEvent> findAllByUserId(Integer userId);
+
+    List<FeedEvent> findByUserId(Integer userId, Integer sinceEventId, int untilEventId, int limit);
+
+    List<FeedEvent> findRecentByUserIds(Collection<Integer> userIds, int limit);
+
+    List<FeedEvent> findCreatedBefore(long timestamp, long restoredBefore, int limit);
+
+    List<Integer> findUserIdsWithMoreEventsThan(int count);
+
+    List<FeedEvent> findExcessByUserId(Integer userId, int keep, long restoredBefore, int limit);
+
+    int deleteAll(Collection<Integer> eventIds);
+
+    void restoreAll(List<FeedEvent> events);
 }
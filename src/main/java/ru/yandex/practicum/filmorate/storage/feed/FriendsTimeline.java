@@ -0,0 +1,280 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.model.feed.FeedEvent;
+import ru.yandex.practicum.filmorate.storage.user.UserCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Лента событий друзей пользователя в памяти приложения.
+ * <p>
+ * Для пользователя, читавшего ленту друзей, хранится буфер последних {@code filmorate.timeline.capacity} событий
+ * его друзей. Буфер собирается из БД при первом чтении и дальше пополняется при записи (fan-out on write):
+ * новое событие добавляется в буферы всех, у кого его автор в друзьях. События авторов, у которых больше
+ * {@code filmorate.timeline.fan-out-threshold} подписчиков, не рассылаются: для такого автора хранится один буфер
+ * его собственных событий, и он подмешивается к ленте при чтении (fan-out on read). Поэтому запись события
+ * затрагивает не больше порога буферов, а чтение не обходит ленты всех друзей.
+ * <p>
+ * Подписчики автора — пользователи, у которых он в друзьях (строки friendship с его friend_id). Их число
+ * хранится в памяти для всех пользователей. Буфер пользователя сбрасывается при изменении его списка друзей,
+ * буферы подписчиков автора — когда автор пересекает порог. События и изменения дружбы учитываются после фиксации
+ * транзакции.
+ */
+@Slf4j
+@Component
+public class FriendsTimeline {
+
+    private static final Comparator<FeedEvent> BY_EVENT_ID = Comparator.comparing(FeedEvent::getEventId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FeedStorage feedStorage;
+    private final FeedEventWriter feedEventWriter;
+    private final UserCache userCache;
+    private final int capacity;
+    private final int fanOutThreshold;
+
+    private final Cache<Integer, Timeline> timelines;
+    private final Cache<Integer, Timeline> authorEvents;
+    private final Cache<Integer, int[]> followers;
+    private final ConcurrentMap<Integer, Integer> followerCounts = new ConcurrentHashMap<>();
+
+    public FriendsTimeline(JdbcTemplate jdbcTemplate, FeedStorage feedStorage, FeedEventWriter feedEventWriter,
+                           UserCache userCache,
+                           @Value("${filmorate.timeline.capacity:200}") int capacity,
+                           @Value("${filmorate.timeline.fan-out-threshold:1000}") int fanOutThreshold,
+                           @Value("${filmorate.timeline.max-users:10000}") long maxUsers) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.feedStorage = feedStorage;
+        this.feedEventWriter = feedEventWriter;
+        this.userCache = userCache;
+        this.capacity = capacity;
+        this.fanOutThreshold = fanOutThreshold;
+        this.timelines = Caffeine.newBuilder().maximumSize(maxUsers).build();
+        this.authorEvents = Caffeine.newBuilder().maximumSize(maxUsers).build();
+        this.followers = Caffeine.newBuilder().maximumSize(maxUsers).build();
+    }
+
+    /**
+     * Пересчитывает число подписчиков всех пользователей и сбрасывает буферы.
+     */
+    @PostConstruct
+    public void rebuild() {
+        Map<Integer, Integer> loaded = loadFollowerCounts();
+        followerCounts.keySet().retainAll(loaded.keySet());
+        followerCounts.putAll(loaded);
+        invalidateAll();
+        log.info("Лента друзей: подписчики посчитаны для {} пользователей, порог рассылки {}",
+                followerCounts.size(), fanOutThreshold);
+    }
+
+    /**
+     * Последние события друзей пользователя, от новых к старым.
+     */
+    public List<FeedEvent> get(int userId, int limit) {
+        List<FeedEvent> events = timelines.get(userId, this::load).newest(limit);
+
+        boolean merged = false;
+        for (int friendId : userCache.friendIds(userId)) {
+            if (isHighDegree(friendId)) {
+                events.addAll(authorEvents.get(friendId, this::loadAuthor).newest(limit));
+                merged = true;
+            }
+        }
+        if (!merged) {
+            return events;
+        }
+        events.sort(BY_EVENT_ID.reversed());
+        return new ArrayList<>(events.subList(0, Math.min(limit, events.size())));
+    }
+
+    /**
+     * Рассылает событие в буферы подписчиков автора после фиксации текущей транзакции.
+     */
+    public void onEventCreated(FeedEvent event) {
+        afterCommit(() -> fanOut(event));
+    }
+
+    /**
+     * Список друзей userId изменился: его буфер собирается заново, подписчики friendId пересчитываются.
+     */
+    public void onFriendshipChanged(int userId, int friendId) {
+        afterCommit(() -> {
+            timelines.invalidate(userId);
+            followers.invalidate(friendId);
+            Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM friendship WHERE friend_id = ?",
+                    Integer.class, friendId);
+            int current = count == null ? 0 : count;
+            Integer previous = followerCounts.put(friendId, current);
+            onFollowerCountChanged(friendId, previous == null ? 0 : previous, current);
+        });
+    }
+
+    /**
+     * Удаляет события пользователя из буферов: его события и дружбы удалены каскадно.
+     *
+     * @param friendIds друзья удалённого пользователя: у каждого из них стало на одного подписчика меньше
+     */
+    public void onUserDeleted(int userId, int[] friendIds) {
+        timelines.invalidate(userId);
+        authorEvents.invalidate(userId);
+        followers.invalidate(userId);
+        followerCounts.remove(userId);
+        timelines.asMap().values().forEach(timeline -> timeline.removeAuthor(userId));
+
+        for (int friendId : friendIds) {
+            followers.invalidate(friendId);
+            int[] previous = new int[1];
+            Integer current = followerCounts.computeIfPresent(friendId, (id, count) -> {
+                previous[0] = count;
+                return count > 1 ? count - 1 : null;
+            });
+            onFollowerCountChanged(friendId, previous[0], current == null ? 0 : current);
+        }
+    }
+
+    public void invalidateAll() {
+        timelines.invalidateAll();
+        authorEvents.invalidateAll();
+        followers.invalidateAll();
+    }
+
+    public long size() {
+        return timelines.estimatedSize();
+    }
+
+    private void fanOut(FeedEvent event) {
+        int authorId = event.getUserId();
+        if (isHighDegree(authorId)) {
+            authorEvents.asMap().computeIfPresent(authorId, (id, timeline) -> timeline.add(event));
+            return;
+        }
+        if (timelines.estimatedSize() == 0) {
+            return;
+        }
+        for (int followerId : followers.get(authorId, this::loadFollowers)) {
+            timelines.asMap().computeIfPresent(followerId, (id, timeline) -> timeline.add(event));
+        }
+    }
+
+    /**
+     * Собирает буфер из БД. Перед чтением записываются накопленные события, а рассылка события в буфер
+     * ждёт окончания сборки, поэтому событие не теряется и не дублируется.
+     */
+    private Timeline load(int userId) {
+        feedEventWriter.flush();
+        List<Integer> authorIds = Arrays.stream(userCache.friendIds(userId))
+                .filter(friendId -> !isHighDegree(friendId))
+                .boxed()
+                .toList();
+        return new Timeline(capacity, authorIds.isEmpty() ? List.of()
+                : feedStorage.findRecentByUserIds(authorIds, capacity));
+    }
+
+    private Timeline loadAuthor(int authorId) {
+        feedEventWriter.flush();
+        return new Timeline(capacity, feedStorage.findRecentByUserIds(List.of(authorId), capacity));
+    }
+
+    private int[] loadFollowers(int authorId) {
+        return jdbcTemplate.queryForList("SELECT user_id FROM friendship WHERE friend_id = ?", Integer.class, authorId)
+                .stream()
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private Map<Integer, Integer> loadFollowerCounts() {
+        Map<Integer, Integer> counts = new HashMap<>();
+        jdbcTemplate.query("SELECT friend_id, COUNT(*) AS followers FROM friendship GROUP BY friend_id", rs -> {
+            counts.put(rs.getInt("friend_id"), rs.getInt("followers"));
+        });
+        return new ConcurrentHashMap<>(counts);
+    }
+
+    private boolean isHighDegree(int userId) {
+        return followerCounts.getOrDefault(userId, 0) > fanOutThreshold;
+    }
+
+    /**
+     * Если автор пересёк порог рассылки, сбрасывает буферы его подписчиков: в них его события либо уже лежат
+     * и задвоятся при подмешивании при чтении, либо не были собраны.
+     */
+    private void onFollowerCountChanged(int authorId, int previous, int current) {
+        if (previous > fanOutThreshold == current > fanOutThreshold) {
+            return;
+        }
+        log.info("Пользователь {} пересёк порог рассылки ленты ({} подписчиков)", authorId, current);
+        authorEvents.invalidate(authorId);
+        followers.invalidate(authorId);
+        timelines.invalidateAll(Arrays.stream(loadFollowers(authorId)).boxed().toList());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Последние события, отсортированные по id. Лишние старые события вытесняются.
+     */
+    static final class Timeline {
+        private final int capacity;
+        private final List<FeedEvent> events;
+
+        Timeline(int capacity, List<FeedEvent> events) {
+            this.capacity = capacity;
+            this.events = new ArrayList<>(events);
+            this.events.sort(BY_EVENT_ID);
+            while (this.events.size() > capacity) {
+                this.events.removeFirst();
+            }
+        }
+
+        synchronized Timeline add(FeedEvent event) {
+            int index = Collections.binarySearch(events, event, BY_EVENT_ID);
+            if (index < 0) {
+                events.add(-index - 1, event);
+                if (events.size() > capacity) {
+                    events.removeFirst();
+                }
+            }
+            return this;
+        }
+
+        synchronized List<FeedEvent> newest(int limit) {
+            List<FeedEvent> newest = new ArrayList<>(Math.min(limit, events.size()));
+            for (int i = events.size() - 1; i >= 0 && newest.size() < limit; i--) {
+                newest.add(events.get(i));
+            }
+            return newest;
+        }
+
+        synchronized void removeAuthor(int userId) {
+            events.removeIf(event -> event.getUserId() == userId);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+/**
+ * Кеш карточек фильмов перед {@link FilmStorage#findById(Integer)}.
+ * <p>
+ * Размер ограничен суммарным приблизительным объёмом карточек в байтах ({@code filmorate.film-cache.max-size}),
+ * вытеснение — W-TinyLFU из Caffeine: новая карточка попадает в кеш, только если её запрашивают чаще,
+ * чем карточку-кандидата на вытеснение, поэтому разовые обращения не вымывают популярные фильмы.
+ * <p>
+ * Количество лайков в карточке не хранится: при выдаче оно берётся из {@link FilmPopularityIndex},
+ * поэтому лайки не сбрасывают кеш. Карточка удаляется при изменении или удалении фильма
+ * ({@link #invalidate(int)}) и при изменении его режиссёров ({@link #onDirectorChanged(int)}).
+ * Наружу отдаются копии, изменение которых не влияет на кеш.
+ */
+@Slf4j
+@Component
+public class FilmCardCache {
+
+    /**
+     * Приблизительный объём карточки без строк и связей: объекты фильма, даты, коллекций и узла кеша.
+     */
+    private static final int BASE_WEIGHT = 256;
+    private static final int LINK_WEIGHT = 48;
+
+    private final FilmStorage filmStorage;
+    private final FilmPopularityIndex popularityIndex;
+    private final long maxWeight;
+    private final Cache<Integer, Film> cards;
+
+    public FilmCardCache(FilmStorage filmStorage,
+                         FilmPopularityIndex popularityIndex,
+                         @Value("${filmorate.film-cache.max-size:64MB}") DataSize maxSize) {
+        this.filmStorage = filmStorage;
+        this.popularityIndex = popularityIndex;
+        this.maxWeight = maxSize.toBytes();
+        this.cards = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((Integer filmId, Film film) -> weight(film))
+                .recordStats()
+                .build();
+        log.info("Кеш карточек фильмов: максимальный объём {} байт", maxWeight);
+    }
+
+    /**
+     * @throws ru.yandex.practicum.filmorate.exception.NotFoundException если фильма нет в БД
+     */
+    public Film get(int filmId) {
+        Film film = copy(cards.get(filmId, filmStorage::findById));
+        int likes = popularityIndex.likes(filmId);
+        if (likes >= 0) {
+            film.setLikesCount(likes);
+        }
+        return film;
+    }
+
+    /**
+     * Фильм из кеша существует наверняка, для остальных выполняется дешёвая проверка в БД
+     * без загрузки карточки в кеш.
+     */
+    public boolean exists(int filmId) {
+        return cards.getIfPresent(filmId) != null || filmStorage.exists(filmId);
+    }
+
+    public void invalidate(int filmId) {
+        cards.invalidate(filmId);
+    }
+
+    /**
+     * Удаляет карточки фильмов режиссёра после изменения или удаления режиссёра.
+     */
+    public void onDirectorChanged(int directorId) {
+        cards.asMap().values().removeIf(film -> film.getDirectors().stream()
+                .anyMatch(director -> director.getId() == directorId));
+    }
+
+    public void invalidateAll() {
+        cards.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return cards.stats();
+    }
+
+    public long size() {
+        return cards.estimatedSize();
+    }
+
+    public long weightedSize() {
+        return cards.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    public long maxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Выполняет отложенное обслуживание кеша (вытеснение, учёт статистики) в текущем потоке.
+     */
+    void cleanUp() {
+        cards.cleanUp();
+    }
+
+    static int weight(Film film) {
+        int chars = length(film.getName()) + length(film.getDescription());
+        for (Director director : film.getDirectors()) {
+            chars += length(director.getName());
+        }
+        return BASE_WEIGHT + 2 * chars + LINK_WEIGHT * (film.getGenres().size() + film.getDirectors().size());
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static Film copy(Film card) {
+        Film film = new Film();
+        film.setId(card.getId());
+        film.setName(card.getName());
+        film.setDescription(card.getDescription());
+        film.setReleaseDate(card.getReleaseDate());
+        film.setDuration(card.getDuration());
+        film.setMpa(card.getMpa());
+        film.setGenres(new LinkedHashSet<>(card.getGenres()));
+        film.setDirectors(new ArrayList<>(card.getDirectors()));
+        film.setLikesCount(card.getLikesCount());
+        return film;
+    }
+}
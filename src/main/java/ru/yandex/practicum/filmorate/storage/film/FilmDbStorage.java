@@ -3,22 +3,31 @@ package ru.yandex.practicum.filmorate.storage.film;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.controller.params.SearchBy;
 import ru.yandex.practicum.filmorate.controller.params.SortBy;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @Slf4j
@@ -27,6 +36,13 @@ import java.util.Set;
 @RequiredArgsConstructor
 public class FilmDbStorage implements FilmStorage {
 
+    /**
+     * Первая фаза загрузки: только скалярные поля фильма, id рейтинга MPA и денормализованный счётчик лайков.
+     * Рейтинг и жанры берутся из справочников в памяти, режиссёры догружаются второй фазой
+     * в {@link #withAssociations(List)},
+     * поэтому запрос не размножает строки и не требует GROUP BY. Список лайкнувших пользователей
+     * не загружается вовсе, пока его явно не запросят через {@link #loadLikes(List)}.
+     */
     private static final String BASE_SELECT_QUERY = """
             SELECT
                 f.film_id,
@@ -35,37 +51,42 @@ public class FilmDbStorage implements FilmStorage {
                 f.release_date,
                 f.duration,
                 f.mpa_id,
-                m.name AS mpa_name,
-                ARRAY_AGG(DISTINCT l.user_id) AS likes,
-                ARRAY_AGG(DISTINCT g.genre_id ORDER BY g.genre_id) AS genre_ids,
-                ARRAY_AGG(DISTINCT g.name ORDER BY g.genre_id) AS genre_names,
-                ARRAY_AGG(DISTINCT d.director_id ORDER BY d.director_id) AS director_ids,
-                ARRAY_AGG(DISTINCT d.name ORDER BY d.director_id) AS director_names,
-                COUNT(DISTINCT l.user_id) AS likes_count
+                f.likes_count
             FROM films f
-            LEFT JOIN mpa_rating m ON f.mpa_id = m.mpa_id
-            LEFT JOIN film_likes AS l ON f.film_id = l.film_id
-            LEFT JOIN film_genre AS fg ON f.film_id = fg.film_id
-            LEFT JOIN genres AS g ON fg.genre_id = g.genre_id
-            LEFT JOIN film_directors AS fd ON f.film_id = fd.film_id
-            LEFT JOIN directors AS d ON d.director_id = fd.director_id
             """;
 
-    private static final String GROUP_BY = """
-            GROUP BY
-                f.film_id,
-                f.name,
-                f.description,
-                f.release_date,
-                f.duration,
-                f.mpa_id,
-                m.name
+    private static final String GENRES_BY_FILM_IDS_QUERY = """
+            SELECT film_id, genre_id
+            FROM film_genre
+            WHERE film_id = ANY(:filmIds)
+            ORDER BY film_id, genre_id
             """;
 
+    private static final String DIRECTORS_BY_FILM_IDS_QUERY = """
+            SELECT fd.film_id, d.director_id, d.name
+            FROM film_directors AS fd
+            JOIN directors AS d ON fd.director_id = d.director_id
+            WHERE fd.film_id = ANY(:filmIds)
+            ORDER BY fd.film_id, d.director_id
+            """;
+
+    private static final String LIKES_BY_FILM_IDS_QUERY = """
+            SELECT film_id, user_id
+            FROM film_likes
+            WHERE film_id = ANY(:filmIds)
+            """;
+
+    /**
+     * Максимальное количество идентификаторов в одном массиве ANY(...) второй фазы загрузки.
+     */
+    private static final int IN_CLAUSE_BATCH_SIZE = 1000;
+
     private final NamedParameterJdbcTemplate namedJdbc;
     private final FilmRowMapper mapper;
+    private final GenreStorage genreStorage;
 
     @Override
+    @Transactional
     public Film create(Film film) {
         String sql = "INSERT INTO films (name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
@@ -95,8 +116,11 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     @Override
+    @Transactional
     public Film update(Film film) {
-        findById(film.getId());
+        if (!exists(film.getId())) {
+            throw new NotFoundException("Фильм с id " + film.getId() + " не найден");
+        }
 
         String sql = "UPDATE films SET name = ?, description = ?, release_date = ?, duration = ?, mpa_id = ? WHERE film_id = ?";
         namedJdbc.getJdbcTemplate().update(sql,
@@ -129,19 +153,38 @@ public class FilmDbStorage implements FilmStorage {
 
     @Override
     public List<Film> findAll() {
-        String sql = BASE_SELECT_QUERY + "\n" + GROUP_BY;
+        String sql = BASE_SELECT_QUERY + "ORDER BY f.film_id";
 
-        List<Film> films = namedJdbc.getJdbcTemplate().query(sql, mapper);
+        List<Film> films = withAssociations(namedJdbc.getJdbcTemplate().query(sql, mapper));
 
         log.debug("Получен список всех фильмов, количество: {}", films.size());
         return films;
     }
 
+    /**
+     * Возвращает страницу фильмов, отсортированных по id, начиная со следующего после afterId.
+     * Запрос использует первичный ключ (keyset pagination), поэтому его стоимость не зависит
+     * от того, насколько далеко от начала таблицы находится страница.
+     *
+     * @param afterId id последнего фильма предыдущей страницы или null для первой страницы
+     * @param limit   максимальный размер страницы
+     */
+    @Override
+    public List<Film> findAll(Integer afterId, int limit) {
+        String sql = BASE_SELECT_QUERY + "WHERE f.film_id > ?\nORDER BY f.film_id\nLIMIT ?";
+
+        List<Film> films = withAssociations(namedJdbc.getJdbcTemplate().query(sql, mapper,
+                afterId == null ? 0 : afterId, limit));
+
+        log.debug("Получена страница фильмов после id {}, количество: {}", afterId, films.size());
+        return films;
+    }
+
     @Override
     public Film findById(Integer id) {
-        String sql = BASE_SELECT_QUERY + "\nWHERE f.film_id = ?\n" + GROUP_BY;
+        String sql = BASE_SELECT_QUERY + "WHERE f.film_id = ?";
 
-        List<Film> films = namedJdbc.getJdbcTemplate().query(sql, mapper, id);
+        List<Film> films = withAssociations(namedJdbc.getJdbcTemplate().query(sql, mapper, id));
 
         if (films.isEmpty()) {
             throw new NotFoundException("Фильм с id " + id + " не найден");
@@ -153,6 +196,83 @@ public class FilmDbStorage implements FilmStorage {
         return film;
     }
 
+    @Override
+    public boolean exists(Integer id) {
+        String sql = "SELECT EXISTS (SELECT 1 FROM films WHERE film_id = ?)";
+        return Boolean.TRUE.equals(namedJdbc.getJdbcTemplate().queryForObject(sql, Boolean.class, id));
+    }
+
+    /**
+     * Проверяет существование фильмов одним запросом по первичному ключу на каждые
+     * {@link #IN_CLAUSE_BATCH_SIZE} различных id, сами строки фильмов не читаются.
+     */
+    @Override
+    public boolean existsAll(Collection<Integer> ids) {
+        for (List<Integer> batch : batches(ids.stream().distinct().toList())) {
+            String sql = "SELECT COUNT(*) FROM films WHERE film_id = ANY(:filmIds)";
+            Integer found = namedJdbc.queryForObject(sql, filmIdsParameter(batch), Integer.class);
+            if (found == null || found < batch.size()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает фильмы с указанными id в том же порядке, в котором переданы id.
+     * Несуществующие id пропускаются.
+     */
+    @Override
+    public List<Film> findAllByIds(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Integer, Film> filmsById = new HashMap<>();
+        for (List<Integer> batch : batches(ids)) {
+            String sql = BASE_SELECT_QUERY + "WHERE f.film_id = ANY(:filmIds)";
+            for (Film film : namedJdbc.query(sql, filmIdsParameter(batch), mapper)) {
+                filmsById.put(film.getId(), film);
+            }
+        }
+
+        List<Film> films = new ArrayList<>(filmsById.size());
+        for (Integer id : ids) {
+            Film film = filmsById.get(id);
+            if (film != null) {
+                films.add(film);
+            }
+        }
+
+        log.debug("Получены фильмы по списку id, количество: {}", films.size());
+        return withAssociations(films);
+    }
+
+    /**
+     * Заполняет у переданных фильмов список id лайкнувших пользователей одним запросом
+     * на каждые {@link #IN_CLAUSE_BATCH_SIZE} фильмов.
+     *
+     * @param films фильмы, загруженные этим хранилищем
+     * @return те же фильмы с заполненным полем likes
+     */
+    @Override
+    public List<Film> loadLikes(List<Film> films) {
+        Map<Integer, Film> filmsById = new HashMap<>();
+        for (Film film : films) {
+            film.setLikes(new HashSet<>());
+            filmsById.put(film.getId(), film);
+        }
+
+        for (List<Integer> batch : batches(new ArrayList<>(filmsById.keySet()))) {
+            namedJdbc.query(LIKES_BY_FILM_IDS_QUERY, filmIdsParameter(batch), rs -> {
+                Film film = filmsById.get(rs.getInt("film_id"));
+                film.getLikes().add(rs.getInt("user_id"));
+            });
+        }
+
+        return films;
+    }
+
     @Override
     public void delete(Integer id) {
         String sql = "DELETE FROM films WHERE film_id = ?";
@@ -165,24 +285,81 @@ public class FilmDbStorage implements FilmStorage {
         log.debug("Удалён фильм с id: {}", id);
     }
 
+    /**
+     * Добавляет лайк и в той же транзакции увеличивает счётчик films.likes_count.
+     * Счётчик меняется только если MERGE действительно вставил строку, поэтому
+     * повторный лайк того же пользователя не искажает значение.
+     * <p>
+     * Существование фильма и пользователя заранее не проверяется: их отсутствие приводит
+     * к нарушению внешнего ключа, которое переводится в {@link NotFoundException}.
+     *
+     * @return true, если лайк был добавлен, и false, если он уже существовал
+     */
     @Override
-    public void addLike(Integer filmId, Integer userId) {
-        findById(filmId);
+    @Transactional
+    public boolean addLike(Integer filmId, Integer userId) {
+        String sql = """
+                MERGE INTO film_likes AS l
+                USING (VALUES (CAST(? AS INTEGER), CAST(? AS INTEGER))) AS s (film_id, user_id)
+                ON l.film_id = s.film_id AND l.user_id = s.user_id
+                WHEN NOT MATCHED THEN INSERT (film_id, user_id) VALUES (s.film_id, s.user_id)
+                """;
+        int inserted;
+        try {
+            inserted = namedJdbc.getJdbcTemplate().update(sql, filmId, userId);
+        } catch (DataIntegrityViolationException e) {
+            checkLikeTargetsExist(filmId, userId);
+            throw e;
+        }
 
-        String sql = "MERGE INTO film_likes (film_id, user_id) VALUES (?, ?)";
-        namedJdbc.getJdbcTemplate().update(sql, filmId, userId);
+        if (inserted > 0) {
+            updateLikesCount(filmId, 1);
+        }
 
         log.debug("Пользователь {} поставил лайк фильму {}", userId, filmId);
+        return inserted > 0;
     }
 
+    /**
+     * Удаляет лайк и в той же транзакции уменьшает счётчик films.likes_count,
+     * если лайк действительно существовал. Существование фильма и пользователя проверяется
+     * только когда удалять было нечего.
+     *
+     * @return true, если лайк был удалён, и false, если его не было
+     */
     @Override
-    public void removeLike(Integer filmId, Integer userId) {
-        findById(filmId);
-
+    @Transactional
+    public boolean removeLike(Integer filmId, Integer userId) {
         String sql = "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
-        namedJdbc.getJdbcTemplate().update(sql, filmId, userId);
+        int deleted = namedJdbc.getJdbcTemplate().update(sql, filmId, userId);
+
+        if (deleted > 0) {
+            updateLikesCount(filmId, -1);
+        } else {
+            checkLikeTargetsExist(filmId, userId);
+        }
 
         log.debug("Пользователь {} удалил лайк у фильма {}", userId, filmId);
+        return deleted > 0;
+    }
+
+    /**
+     * Пересчитывает films.likes_count по таблице film_likes для фильмов, у которых счётчик разошёлся
+     * с фактическим количеством лайков.
+     *
+     * @return количество исправленных фильмов
+     */
+    @Override
+    public int reconcileLikesCount() {
+        String sql = """
+                UPDATE films f
+                SET likes_count = (SELECT COUNT(*) FROM film_likes l WHERE l.film_id = f.film_id)
+                WHERE likes_count <> (SELECT COUNT(*) FROM film_likes l WHERE l.film_id = f.film_id)
+                """;
+        int updated = namedJdbc.getJdbcTemplate().update(sql);
+
+        log.debug("Пересчитаны счётчики лайков, исправлено фильмов: {}", updated);
+        return updated;
     }
 
     @Override
@@ -190,7 +367,7 @@ public class FilmDbStorage implements FilmStorage {
         String sql = buildQuery(year, genreId);
         Object[] params = buildParams(year, genreId, limit);
 
-        List<Film> films = namedJdbc.getJdbcTemplate().query(sql, mapper, params);
+        List<Film> films = withAssociations(namedJdbc.getJdbcTemplate().query(sql, mapper, params));
 
         log.debug("Получен список популярных фильмов, количество: {}", films.size());
         return films;
@@ -203,9 +380,10 @@ public class FilmDbStorage implements FilmStorage {
      * 1. В зависимости от параметра sortBy формирует фрагмент ORDER BY:
      * likes — сортировка по количеству лайков по убыванию;
      * year  — сортировка по дате выхода фильма по возрастанию.
-     * 2. Собирает итоговый SQL-запрос на основе базового SELECT, условия по director_id
-     * и группировки (GROUP BY), а затем добавляет секцию сортировки.
-     * 3. Выполняет запрос через namedJdbc.getJdbcTemplate() и маппер, возвращая список фильмов.
+     * 2. Собирает итоговый SQL-запрос на основе базового SELECT и условия EXISTS по film_directors,
+     * а затем добавляет секцию сортировки.
+     * 3. Выполняет запрос через namedJdbc.getJdbcTemplate() и маппер, после чего одним запросом
+     * на каждую связь догружает жанры, режиссеров и лайки найденных фильмов.
      *
      * @param directorId идентификатор режиссера
      * @param sortBy     тип сортировки (likes или year)
@@ -215,13 +393,16 @@ public class FilmDbStorage implements FilmStorage {
     public List<Film> getFilmsByDirector(Integer directorId, SortBy sortBy) {
         String sqlSortBy = "";
         switch (sortBy) {
-            case likes -> sqlSortBy = "ORDER BY likes_count DESC";
-            case year -> sqlSortBy = "ORDER BY f.release_date";
+            case likes -> sqlSortBy = "ORDER BY likes_count DESC, f.film_id";
+            case year -> sqlSortBy = "ORDER BY f.release_date, f.film_id";
             default -> throw new IllegalArgumentException("Такая сортировка не поддерживается: " + sortBy);
         }
-        String sql = BASE_SELECT_QUERY + "\nWHERE d.director_id = ?\n" + GROUP_BY + "\n" + sqlSortBy + "\n";
+        String sql = BASE_SELECT_QUERY +
+                     "WHERE EXISTS (SELECT 1 FROM film_directors fd " +
+                     "WHERE fd.film_id = f.film_id AND fd.director_id = ?)\n" +
+                     sqlSortBy;
 
-        List<Film> films = namedJdbc.getJdbcTemplate().query(sql, mapper, directorId);
+        List<Film> films = withAssociations(namedJdbc.getJdbcTemplate().query(sql, mapper, directorId));
         log.debug("Получен список фильмов режиссера, количество: {}", films.size());
         return films;
     }
@@ -235,11 +416,10 @@ public class FilmDbStorage implements FilmStorage {
                      "WHERE fl.user_id IN (?, ?) " +
                      "GROUP BY fl.film_id " +
                      "HAVING COUNT(DISTINCT fl.user_id) = 2" +
-                     ") " +
-                     GROUP_BY +
-                     "ORDER BY likes_count DESC";
+                     ")\n" +
+                     "ORDER BY likes_count DESC, f.film_id";
 
-        List<Film> films = namedJdbc.getJdbcTemplate().query(sql, new Object[]{userId, friendId}, mapper);
+        List<Film> films = withAssociations(namedJdbc.getJdbcTemplate().query(sql, mapper, userId, friendId));
         log.debug("Получен список общих фильмов пользователей {} и {}, количество: {}", userId,
                 friendId, films.size());
 
@@ -254,22 +434,27 @@ public class FilmDbStorage implements FilmStorage {
         boolean searchBoth = searchParams.contains(SearchBy.TITLE) &&
                              searchParams.contains(SearchBy.DIRECTOR);
 
+        String directorCondition = "EXISTS (SELECT 1 FROM film_directors fd " +
+                                   "JOIN directors d ON d.director_id = fd.director_id " +
+                                   "WHERE fd.film_id = f.film_id AND LOWER(d.name) LIKE ?)";
+
         // WHERE clause
         if (searchBoth) {
-            sql.append("\nWHERE LOWER(f.name) LIKE ? OR LOWER(d.name) LIKE ?\n");
+            sql.append("WHERE LOWER(f.name) LIKE ? OR ").append(directorCondition).append("\n");
         } else if (searchParams.contains(SearchBy.TITLE)) {
-            sql.append("\nWHERE LOWER(f.name) LIKE ?\n");
+            sql.append("WHERE LOWER(f.name) LIKE ?\n");
         } else {
-            sql.append("\nWHERE LOWER(d.name) LIKE ?\n");
+            sql.append("WHERE ").append(directorCondition).append("\n");
         }
 
         // Общая часть - один раз для всех случаев
-        sql.append(GROUP_BY).append("ORDER BY likes_count DESC");
+        sql.append("ORDER BY likes_count DESC, f.film_id");
 
         // Вызов query с правильными параметрами
-        return searchBoth
+        List<Film> films = searchBoth
                 ? namedJdbc.getJdbcTemplate().query(sql.toString(), mapper, param, param)
                 : namedJdbc.getJdbcTemplate().query(sql.toString(), mapper, param);
+        return withAssociations(films);
     }
 
     /**
@@ -292,7 +477,7 @@ public class FilmDbStorage implements FilmStorage {
                     .append(String.join(" AND ", conditions))
                     .append("\n");
         }
-        baseQuery.append(GROUP_BY).append("\nORDER BY likes_count DESC LIMIT ?");
+        baseQuery.append("ORDER BY likes_count DESC, f.film_id LIMIT ?");
 
         return baseQuery.toString();
     }
@@ -310,6 +495,27 @@ public class FilmDbStorage implements FilmStorage {
         return params.toArray();
     }
 
+    /**
+     * Лёгкая проверка существования фильма и пользователя для операций с лайками.
+     *
+     * @throws NotFoundException если фильма или пользователя нет
+     */
+    private void checkLikeTargetsExist(Integer filmId, Integer userId) {
+        if (!exists(filmId)) {
+            throw new NotFoundException("Фильм с id " + filmId + " не найден");
+        }
+
+        String userSql = "SELECT EXISTS (SELECT 1 FROM users WHERE user_id = ?)";
+        if (!Boolean.TRUE.equals(namedJdbc.getJdbcTemplate().queryForObject(userSql, Boolean.class, userId))) {
+            throw new NotFoundException("Пользователь с id " + userId + " не найден");
+        }
+    }
+
+    private void updateLikesCount(int filmId, int delta) {
+        String sql = "UPDATE films SET likes_count = likes_count + ? WHERE film_id = ?";
+        namedJdbc.getJdbcTemplate().update(sql, delta, filmId);
+    }
+
     private void saveGenres(int filmId, Set<Genre> genres) {
         String sql = "INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)";
 
@@ -405,12 +611,11 @@ public class FilmDbStorage implements FilmStorage {
                           WHERE user_id = :userId
                       )
                 )
-                """ + GROUP_BY + """
-                ORDER BY likes_count DESC
+                ORDER BY likes_count DESC, f.film_id
                 """;
 
         MapSqlParameterSource params = new MapSqlParameterSource("userId", userId);
-        List<Film> films = namedJdbc.query(sql, params, mapper);
+        List<Film> films = withAssociations(namedJdbc.query(sql, params, mapper));
 
         if (films.isEmpty()) {
             log.debug("Для пользователя {} не найдено похожих пользователей или все фильмы уже просмотрены", userId);
@@ -420,4 +625,61 @@ public class FilmDbStorage implements FilmStorage {
 
         return films;
     }
+
+    /**
+     * Вторая фаза загрузки фильмов.
+     * <p>
+     * Для уже выбранных фильмов одним запросом на каждую связь (жанры, режиссеры)
+     * получает связанные данные по списку film_id и раскладывает их по фильмам в памяти.
+     * Так количество строк, читаемых из БД, равно сумме размеров связей, а не их произведению,
+     * как было бы при LEFT JOIN всех таблиц сразу.
+     *
+     * @param films фильмы, заполненные {@link FilmRowMapper} только скалярными полями
+     * @return те же фильмы в исходном порядке
+     */
+    private List<Film> withAssociations(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+
+        Map<Integer, Film> filmsById = new LinkedHashMap<>();
+        for (Film film : films) {
+            filmsById.put(film.getId(), film);
+        }
+
+        for (List<Integer> batch : batches(new ArrayList<>(filmsById.keySet()))) {
+            MapSqlParameterSource params = filmIdsParameter(batch);
+
+            namedJdbc.query(GENRES_BY_FILM_IDS_QUERY, params, rs -> {
+                Film film = filmsById.get(rs.getInt("film_id"));
+                film.getGenres().add(genreStorage.findReferencedById(rs.getInt("genre_id")));
+            });
+
+            namedJdbc.query(DIRECTORS_BY_FILM_IDS_QUERY, params, rs -> {
+                Film film = filmsById.get(rs.getInt("film_id"));
+                film.getDirectors().add(new Director(rs.getInt("director_id"), rs.getString("name")));
+            });
+        }
+
+        return films;
+    }
+
+    /**
+     * Список id передаётся одним параметром-массивом для {@code = ANY(:filmIds)}: текст запроса не зависит
+     * от количества id, поэтому H2 не разбирает запрос заново для каждой длины списка, как с IN (...).
+     */
+    private static MapSqlParameterSource filmIdsParameter(List<Integer> filmIds) {
+        return new MapSqlParameterSource().addValue("filmIds", filmIds.toArray(new Integer[0]), Types.ARRAY);
+    }
+
+    /**
+     * Разбивает список id на части не длиннее {@link #IN_CLAUSE_BATCH_SIZE}.
+     */
+    private List<List<Integer>> batches(List<Integer> ids) {
+        List<List<Integer>> batches = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_BATCH_SIZE) {
+            batches.add(ids.subList(from, Math.min(from + IN_CLAUSE_BATCH_SIZE, ids.size())));
+        }
+        return batches;
+    }
 }
@@ -0,0 +1,256 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.util.Arrays;
+
+/**
+ * Неизменяемое сжатое множество id фильмов по схеме Roaring bitmap.
+ * <p>
+ * Id делятся на блоки по старшим 16 битам. Блок с не более чем {@link #ARRAY_LIMIT} значениями хранит
+ * отсортированный массив младших 16 бит, более плотный блок — битовую карту на 65 536 бит.
+ * Пересечение двух битовых карт — это AND 1024 слов независимо от числа лайков, поэтому пересечение
+ * множеств пользователей с тысячами лайков стоит не дороже, чем у пользователей с несколькими лайками.
+ * <p>
+ * Изменения возвращают новый экземпляр, копируя только затронутый блок.
+ */
+final class FilmIdBitmap {
+
+    static final FilmIdBitmap EMPTY = new FilmIdBitmap(new char[0], new Object[0]);
+
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private final char[] keys;
+    private final Object[] containers;
+    private final int cardinality;
+
+    private FilmIdBitmap(char[] keys, Object[] containers) {
+        this.keys = keys;
+        this.containers = containers;
+        int total = 0;
+        for (Object container : containers) {
+            total += container instanceof long[] words ? cardinality(words) : ((char[]) container).length;
+        }
+        this.cardinality = total;
+    }
+
+    static FilmIdBitmap of(int[] ids) {
+        FilmIdBitmap bitmap = EMPTY;
+        int[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        int from = 0;
+        while (from < sorted.length) {
+            char key = high(sorted[from]);
+            int to = from;
+            while (to < sorted.length && high(sorted[to]) == key) {
+                to++;
+            }
+            char[] values = new char[to - from];
+            int size = 0;
+            for (int i = from; i < to; i++) {
+                if (size == 0 || values[size - 1] != low(sorted[i])) {
+                    values[size++] = low(sorted[i]);
+                }
+            }
+            bitmap = bitmap.withContainer(key, size > ARRAY_LIMIT ? toBitmap(values, size)
+                    : Arrays.copyOf(values, size));
+            from = to;
+        }
+        return bitmap;
+    }
+
+    boolean contains(int id) {
+        int index = Arrays.binarySearch(keys, high(id));
+        return index >= 0 && containerContains(containers[index], low(id));
+    }
+
+    FilmIdBitmap with(int id) {
+        if (contains(id)) {
+            return this;
+        }
+        int index = Arrays.binarySearch(keys, high(id));
+        char low = low(id);
+        if (index < 0) {
+            return withContainer(high(id), new char[]{low});
+        }
+        Object container = containers[index];
+        if (container instanceof long[] words) {
+            long[] updated = words.clone();
+            updated[low >>> 6] |= 1L << low;
+            return withContainer(high(id), updated);
+        }
+        char[] values = (char[]) container;
+        int position = -Arrays.binarySearch(values, low) - 1;
+        char[] updated = new char[values.length + 1];
+        System.arraycopy(values, 0, updated, 0, position);
+        updated[position] = low;
+        System.arraycopy(values, position, updated, position + 1, values.length - position);
+        return withContainer(high(id), updated.length > ARRAY_LIMIT ? toBitmap(updated, updated.length) : updated);
+    }
+
+    FilmIdBitmap without(int id) {
+        if (!contains(id)) {
+            return this;
+        }
+        int index = Arrays.binarySearch(keys, high(id));
+        char low = low(id);
+        Object container = containers[index];
+        if (container instanceof long[] words) {
+            long[] updated = words.clone();
+            updated[low >>> 6] &= ~(1L << low);
+            int remaining = cardinality(updated);
+            return withContainer(high(id), remaining > ARRAY_LIMIT ? updated : toArray(updated, remaining));
+        }
+        char[] values = (char[]) container;
+        int position = Arrays.binarySearch(values, low);
+        char[] updated = new char[values.length - 1];
+        System.arraycopy(values, 0, updated, 0, position);
+        System.arraycopy(values, position + 1, updated, position, values.length - position - 1);
+        return withContainer(high(id), updated);
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Пересечение двух множеств.
+     *
+     * @return id, входящие в оба множества, по возрастанию
+     */
+    int[] and(FilmIdBitmap other) {
+        int[] result = new int[Math.min(cardinality, other.cardinality)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                size = and(keys[i], containers[i], other.containers[j], result, size);
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static int and(char key, Object left, Object right, int[] result, int size) {
+        int base = key << 16;
+        if (left instanceof long[] leftWords && right instanceof long[] rightWords) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                long word = leftWords[w] & rightWords[w];
+                while (word != 0) {
+                    result[size++] = base | (w << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+        } else if (left instanceof long[] leftWords) {
+            for (char low : (char[]) right) {
+                if ((leftWords[low >>> 6] & (1L << low)) != 0) {
+                    result[size++] = base | low;
+                }
+            }
+        } else if (right instanceof long[] rightWords) {
+            for (char low : (char[]) left) {
+                if ((rightWords[low >>> 6] & (1L << low)) != 0) {
+                    result[size++] = base | low;
+                }
+            }
+        } else {
+            char[] leftValues = (char[]) left;
+            char[] rightValues = (char[]) right;
+            int i = 0;
+            int j = 0;
+            while (i < leftValues.length && j < rightValues.length) {
+                if (leftValues[i] < rightValues[j]) {
+                    i++;
+                } else if (leftValues[i] > rightValues[j]) {
+                    j++;
+                } else {
+                    result[size++] = base | leftValues[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return size;
+    }
+
+    private FilmIdBitmap withContainer(char key, Object container) {
+        int index = Arrays.binarySearch(keys, key);
+        boolean empty = container instanceof char[] values && values.length == 0;
+        if (index >= 0) {
+            if (empty) {
+                char[] newKeys = new char[keys.length - 1];
+                Object[] newContainers = new Object[keys.length - 1];
+                System.arraycopy(keys, 0, newKeys, 0, index);
+                System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+                System.arraycopy(containers, 0, newContainers, 0, index);
+                System.arraycopy(containers, index + 1, newContainers, index, keys.length - index - 1);
+                return new FilmIdBitmap(newKeys, newContainers);
+            }
+            Object[] newContainers = containers.clone();
+            newContainers[index] = container;
+            return new FilmIdBitmap(keys, newContainers);
+        }
+        if (empty) {
+            return this;
+        }
+        int position = -index - 1;
+        char[] newKeys = new char[keys.length + 1];
+        Object[] newContainers = new Object[keys.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, position);
+        System.arraycopy(containers, 0, newContainers, 0, position);
+        newKeys[position] = key;
+        newContainers[position] = container;
+        System.arraycopy(keys, position, newKeys, position + 1, keys.length - position);
+        System.arraycopy(containers, position, newContainers, position + 1, keys.length - position);
+        return new FilmIdBitmap(newKeys, newContainers);
+    }
+
+    private static boolean containerContains(Object container, char low) {
+        if (container instanceof long[] words) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, low) >= 0;
+    }
+
+    private static long[] toBitmap(char[] values, int size) {
+        long[] words = new long[BITMAP_WORDS];
+        for (int i = 0; i < size; i++) {
+            words[values[i] >>> 6] |= 1L << values[i];
+        }
+        return words;
+    }
+
+    private static char[] toArray(long[] words, int cardinality) {
+        char[] values = new char[cardinality];
+        int size = 0;
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+            long word = words[w];
+            while (word != 0) {
+                values[size++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return values;
+    }
+
+    private static int cardinality(long[] words) {
+        int cardinality = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+        }
+        return cardinality;
+    }
+
+    private static char high(int id) {
+        return (char) (id >>> 16);
+    }
+
+    private static char low(int id) {
+        return (char) id;
+    }
+}
@@ -0,0 +1,328 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс популярности фильмов в памяти приложения.
+ * <p>
+ * Хранит фильмы, упорядоченные по количеству лайков (по убыванию, при равенстве — по id),
+ * в трёх видах разделов: общий, по году выхода и по жанру. Поэтому первые K популярных фильмов
+ * выбираются обходом первых K элементов нужного раздела, без агрегации в БД.
+ * <p>
+ * Индекс заполняется из БД при старте приложения и затем поддерживается инкрементально:
+ * {@link #onLikeChanged(int, int)} при изменении лайков, {@link #onFilmSaved(Film)} и
+ * {@link #onFilmDeleted(int)} при изменении самих фильмов. Изменения фильмов, пришедшие во время
+ * {@link #rebuild()}, запоминаются и применяются к новому индексу перед его публикацией, а для фильмов,
+ * лайки которых менялись, количество лайков перечитывается из БД.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmPopularityIndex {
+
+    private static final Comparator<Entry> BY_POPULARITY = Comparator.comparingInt(Entry::likes).reversed()
+            .thenComparingInt(Entry::filmId);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, FilmState> films = new HashMap<>();
+    private final NavigableSet<Entry> global = new TreeSet<>(BY_POPULARITY);
+    private final Map<Integer, NavigableSet<Entry>> byYear = new HashMap<>();
+    private final Map<Integer, NavigableSet<Entry>> byGenre = new HashMap<>();
+    // Изменения фильмов и id фильмов с изменёнными лайками, пришедшие во время перестроения;
+    // не null только во время rebuild, доступ под lock
+    private List<Runnable> changesDuringRebuild;
+    private Set<Integer> likesChangedDuringRebuild;
+
+    /**
+     * Полностью перестраивает индекс по таблицам films, film_genre и film_likes.
+     * <p>
+     * Запись изменений начинается до чтения таблиц, поэтому изменение, применённое после фиксации транзакции,
+     * не теряется при подмене индекса. Лайки, изменённые во время чтения, не применяются к новому индексу
+     * приращениями: количество лайков таких фильмов перечитывается при подмене, поэтому лайк не учитывается
+     * дважды, даже если попал и в выборку, и в журнал изменений. Дважды может быть учтён только лайк,
+     * зафиксированный до перечитывания, но применённый после подмены, — это окно равно задержке между
+     * фиксацией транзакции и её afterCommit.
+     */
+    @PostConstruct
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+            likesChangedDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<Integer, FilmState> loaded = new HashMap<>();
+
+        jdbcTemplate.query("SELECT film_id, EXTRACT(YEAR FROM release_date) AS release_year FROM films", rs -> {
+            int year = rs.getInt("release_year");
+            loaded.put(rs.getInt("film_id"), new FilmState(rs.wasNull() ? null : year));
+        });
+        jdbcTemplate.query("SELECT film_id, genre_id FROM film_genre", rs -> {
+            FilmState state = loaded.get(rs.getInt("film_id"));
+            if (state != null) {
+                state.genreIds.add(rs.getInt("genre_id"));
+            }
+        });
+        jdbcTemplate.query("SELECT film_id, COUNT(*) AS likes FROM film_likes GROUP BY film_id", rs -> {
+            FilmState state = loaded.get(rs.getInt("film_id"));
+            if (state != null) {
+                state.likes = rs.getInt("likes");
+            }
+        });
+
+        int replayed;
+        lock.writeLock().lock();
+        try {
+            films.clear();
+            global.clear();
+            byYear.clear();
+            byGenre.clear();
+            loaded.forEach((filmId, state) -> {
+                films.put(filmId, state);
+                link(filmId, state);
+            });
+            changesDuringRebuild.forEach(Runnable::run);
+            reloadLikes(likesChangedDuringRebuild);
+            replayed = changesDuringRebuild.size() + likesChangedDuringRebuild.size();
+            changesDuringRebuild = null;
+            likesChangedDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.info("Индекс популярности построен за {} мс, фильмов: {}, изменений во время построения: {}",
+                System.currentTimeMillis() - start, loaded.size(), replayed);
+    }
+
+    /**
+     * Возвращает id первых {@code limit} фильмов по популярности с необязательными фильтрами.
+     *
+     * @param limit   максимальное количество фильмов
+     * @param year    год выхода фильма или null
+     * @param genreId id жанра или null
+     * @return id фильмов в порядке убывания количества лайков
+     */
+    public List<Integer> top(int limit, Integer year, Integer genreId) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Entry> yearPartition = year == null ? null : byYear.getOrDefault(year, new TreeSet<>());
+            NavigableSet<Entry> genrePartition = genreId == null ? null :
+                    byGenre.getOrDefault(genreId, new TreeSet<>());
+
+            NavigableSet<Entry> source = global;
+            if (yearPartition != null && genrePartition != null) {
+                source = yearPartition.size() <= genrePartition.size() ? yearPartition : genrePartition;
+            } else if (yearPartition != null) {
+                source = yearPartition;
+            } else if (genrePartition != null) {
+                source = genrePartition;
+            }
+
+            List<Integer> result = new ArrayList<>(Math.min(limit, source.size()));
+            for (Entry entry : source) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                FilmState state = films.get(entry.filmId());
+                boolean matchesYear = year == null || year.equals(state.year);
+                boolean matchesGenre = genreId == null || state.genreIds.contains(genreId);
+                if (matchesYear && matchesGenre) {
+                    result.add(entry.filmId());
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет фильм в индекс или обновляет его год выхода и жанры, сохраняя количество лайков.
+     */
+    public void onFilmSaved(Film film) {
+        FilmState state = new FilmState(film.getReleaseDate() == null ? null : film.getReleaseDate().getYear());
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                state.genreIds.add(genre.getId());
+            }
+        }
+
+        apply(() -> {
+            FilmState previous = films.get(film.getId());
+            FilmState saved = state.copy();
+            if (previous != null) {
+                unlink(film.getId(), previous);
+                saved.likes = previous.likes;
+            }
+            films.put(film.getId(), saved);
+            link(film.getId(), saved);
+        });
+    }
+
+    public void onFilmDeleted(int filmId) {
+        apply(() -> {
+            FilmState state = films.remove(filmId);
+            if (state != null) {
+                unlink(filmId, state);
+            }
+        });
+    }
+
+    /**
+     * Изменяет количество лайков фильма на {@code delta} и перемещает его во всех разделах.
+     */
+    public void onLikeChanged(int filmId, int delta) {
+        lock.writeLock().lock();
+        try {
+            FilmState state = films.get(filmId);
+            if (state != null) {
+                setLikes(filmId, state, state.likes + delta);
+            }
+            if (likesChangedDuringRebuild != null) {
+                likesChangedDuringRebuild.add(filmId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return количество лайков фильма или -1, если фильма нет в индексе
+     */
+    public int likes(int filmId) {
+        lock.readLock().lock();
+        try {
+            FilmState state = films.get(filmId);
+            return state == null ? -1 : state.likes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return films.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Применяет изменение к индексу, а во время перестроения ещё и запоминает его для нового индекса.
+     */
+    private void apply(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Перечитывает количество лайков фильмов из film_likes. Вызывается под lock.
+     */
+    private void reloadLikes(Set<Integer> filmIds) {
+        if (filmIds.isEmpty()) {
+            return;
+        }
+        Map<Integer, Integer> likes = new HashMap<>();
+        String sql = "SELECT film_id, COUNT(*) AS likes FROM film_likes WHERE film_id = ANY(?) GROUP BY film_id";
+        jdbcTemplate.query(sql, rs -> {
+            likes.put(rs.getInt("film_id"), rs.getInt("likes"));
+        }, new SqlParameterValue(Types.ARRAY, filmIds.toArray(Integer[]::new)));
+        for (Integer filmId : filmIds) {
+            FilmState state = films.get(filmId);
+            if (state != null) {
+                setLikes(filmId, state, likes.getOrDefault(filmId, 0));
+            }
+        }
+    }
+
+    private void setLikes(int filmId, FilmState state, int likes) {
+        unlink(filmId, state);
+        state.likes = likes;
+        link(filmId, state);
+    }
+
+    private void link(int filmId, FilmState state) {
+        Entry entry = new Entry(filmId, state.likes);
+        global.add(entry);
+        if (state.year != null) {
+            byYear.computeIfAbsent(state.year, key -> new TreeSet<>(BY_POPULARITY)).add(entry);
+        }
+        for (Integer genreId : state.genreIds) {
+            byGenre.computeIfAbsent(genreId, key -> new TreeSet<>(BY_POPULARITY)).add(entry);
+        }
+    }
+
+    private void unlink(int filmId, FilmState state) {
+        Entry entry = new Entry(filmId, state.likes);
+        global.remove(entry);
+        if (state.year != null) {
+            removeFromPartition(byYear, state.year, entry);
+        }
+        for (Integer genreId : state.genreIds) {
+            removeFromPartition(byGenre, genreId, entry);
+        }
+    }
+
+    private void removeFromPartition(Map<Integer, NavigableSet<Entry>> partitions, Integer key, Entry entry) {
+        NavigableSet<Entry> partition = partitions.get(key);
+        if (partition != null) {
+            partition.remove(entry);
+            if (partition.isEmpty()) {
+                partitions.remove(key);
+            }
+        }
+    }
+
+    private record Entry(int filmId, int likes) {
+    }
+
+    private static final class FilmState {
+        private final Integer year;
+        private final Set<Integer> genreIds = new HashSet<>();
+        private int likes;
+
+        private FilmState(Integer year) {
+            this.year = year;
+        }
+
+        private FilmState copy() {
+            FilmState copy = new FilmState(year);
+            copy.genreIds.addAll(genreIds);
+            copy.likes = likes;
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSuggestion;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс по триграммам названий фильмов и имён режиссёров.
+ * <p>
+ * Поиск сохраняет семантику {@code LOWER(name) LIKE '%query%'}: кандидаты находятся пересечением
+ * списков триграмм запроса и проверяются на вхождение подстроки. Запросы короче трёх символов
+ * проверяются перебором названий в памяти. Каждому найденному фильму присваивается качество совпадения
+ * от 0 до 1 (см. {@link #quality(String, String)}).
+ * <p>
+ * Для подсказок по мере ввода ({@link #suggest(String, int)}) названия и имена режиссёров дополнительно хранятся
+ * в отсортированных словарях суффиксов, начинающихся с начала слова, поэтому первые N совпадений по префиксу
+ * находятся обходом начала диапазона словаря.
+ * <p>
+ * Индекс заполняется из БД при старте приложения и поддерживается событиями создания, обновления и удаления
+ * фильмов и режиссёров.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmSearchIndex {
+
+    private static final int GRAM = 3;
+    private static final double DIRECTOR_WEIGHT = 0.8;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, String> titles = new HashMap<>();
+    private final Map<Integer, String> directorNames = new HashMap<>();
+    private final Map<Integer, Set<Integer>> directorsByFilm = new HashMap<>();
+    private final Map<Integer, Set<Integer>> filmsByDirector = new HashMap<>();
+    private final Map<Long, Set<Integer>> titleGrams = new HashMap<>();
+    private final Map<Long, Set<Integer>> directorGrams = new HashMap<>();
+    private final Map<Integer, String> displayTitles = new HashMap<>();
+    private final Map<Integer, String> displayDirectorNames = new HashMap<>();
+    private final NavigableMap<String, Set<Integer>> titleStarts = new TreeMap<>();
+    private final NavigableMap<String, Set<Integer>> titleWordStarts = new TreeMap<>();
+    private final NavigableMap<String, Set<Integer>> directorWordStarts = new TreeMap<>();
+
+    /**
+     * Полностью перестраивает индекс по таблицам films, directors и film_directors.
+     */
+    @PostConstruct
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            titles.clear();
+            directorNames.clear();
+            directorsByFilm.clear();
+            filmsByDirector.clear();
+            titleGrams.clear();
+            directorGrams.clear();
+            displayTitles.clear();
+            displayDirectorNames.clear();
+            titleStarts.clear();
+            titleWordStarts.clear();
+            directorWordStarts.clear();
+
+            jdbcTemplate.query("SELECT film_id, name FROM films", rs -> {
+                putTitle(rs.getInt("film_id"), rs.getString("name"));
+            });
+            jdbcTemplate.query("SELECT director_id, name FROM directors", rs -> {
+                putDirectorName(rs.getInt("director_id"), rs.getString("name"));
+            });
+            jdbcTemplate.query("SELECT film_id, director_id FROM film_directors", rs -> {
+                link(rs.getInt("film_id"), rs.getInt("director_id"));
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Поисковый индекс построен за {} мс, фильмов: {}, режиссёров: {}",
+                System.currentTimeMillis() - start, titles.size(), directorNames.size());
+    }
+
+    /**
+     * Ищет фильмы, у которых название и/или имя режиссёра содержит {@code query} без учёта регистра.
+     *
+     * @return совпадения в порядке возрастания id фильма
+     */
+    public List<Match> search(String query, boolean byTitle, boolean byDirector) {
+        String needle = normalize(query);
+        lock.readLock().lock();
+        try {
+            Map<Integer, Double> qualityByFilm = new HashMap<>();
+            if (byTitle) {
+                for (int filmId : candidates(needle, titleGrams, titles)) {
+                    double quality = quality(titles.get(filmId), needle);
+                    if (quality > 0) {
+                        qualityByFilm.merge(filmId, quality, Math::max);
+                    }
+                }
+            }
+            if (byDirector) {
+                for (int directorId : candidates(needle, directorGrams, directorNames)) {
+                    double quality = DIRECTOR_WEIGHT * quality(directorNames.get(directorId), needle);
+                    if (quality > 0) {
+                        for (int filmId : filmsByDirector.getOrDefault(directorId, Set.of())) {
+                            qualityByFilm.merge(filmId, quality, Math::max);
+                        }
+                    }
+                }
+            }
+
+            List<Match> matches = new ArrayList<>(qualityByFilm.size());
+            qualityByFilm.forEach((filmId, quality) -> matches.add(new Match(filmId, quality)));
+            matches.sort((a, b) -> Integer.compare(a.filmId(), b.filmId()));
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Подсказки по мере ввода: первые {@code limit} фильмов, у которых с {@code query} без учёта регистра
+     * начинается название, одно из слов названия или одно из слов имени режиссёра — именно в таком порядке
+     * групп, внутри группы по алфавиту. Запрос к БД не выполняется.
+     */
+    public List<FilmSuggestion> suggest(String query, int limit) {
+        String prefix = normalize(query).stripLeading();
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Map<Integer, FilmSuggestion> suggestions = new LinkedHashMap<>();
+            suggestTitles(titleStarts, prefix, limit, suggestions);
+            suggestTitles(titleWordStarts, prefix, limit, suggestions);
+            for (Map.Entry<String, Set<Integer>> entry : directorWordStarts.tailMap(prefix, true).entrySet()) {
+                if (suggestions.size() >= limit || !entry.getKey().startsWith(prefix)) {
+                    break;
+                }
+                for (int directorId : entry.getValue()) {
+                    for (int filmId : filmsByDirector.getOrDefault(directorId, Set.of())) {
+                        if (suggestions.size() >= limit) {
+                            break;
+                        }
+                        suggestions.putIfAbsent(filmId, new FilmSuggestion(filmId, displayTitles.get(filmId),
+                                displayDirectorNames.get(directorId)));
+                    }
+                }
+            }
+            return new ArrayList<>(suggestions.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет фильм в индекс или обновляет его название и режиссёров.
+     */
+    public void onFilmSaved(Film film) {
+        lock.writeLock().lock();
+        try {
+            removeFilm(film.getId());
+            putTitle(film.getId(), film.getName());
+            if (film.getDirectors() != null) {
+                for (Director director : film.getDirectors()) {
+                    link(film.getId(), director.getId());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onFilmDeleted(int filmId) {
+        lock.writeLock().lock();
+        try {
+            removeFilm(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет режиссёра или обновляет его имя; связи с фильмами сохраняются.
+     */
+    public void onDirectorSaved(Director director) {
+        lock.writeLock().lock();
+        try {
+            removeDirectorName(director.getId());
+            putDirectorName(director.getId(), director.getName());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onDirectorDeleted(int directorId) {
+        lock.writeLock().lock();
+        try {
+            removeDirectorName(directorId);
+            Set<Integer> films = filmsByDirector.remove(directorId);
+            if (films != null) {
+                for (Integer filmId : films) {
+                    removeFromSet(directorsByFilm, filmId, directorId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return titles.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Качество совпадения строки с запросом: 1 — полное совпадение, 0.75 — строка начинается с запроса,
+     * 0.5 — с запроса начинается одно из слов, 0.25 — вхождение внутри слова, 0 — запрос не входит в строку.
+     */
+    static double quality(String text, String needle) {
+        int index = text.indexOf(needle);
+        if (index < 0) {
+            return 0;
+        }
+        if (text.length() == needle.length()) {
+            return 1;
+        }
+        if (index == 0) {
+            return 0.75;
+        }
+        do {
+            if (!Character.isLetterOrDigit(text.charAt(index - 1))) {
+                return 0.5;
+            }
+            index = text.indexOf(needle, index + 1);
+        } while (index > 0);
+        return 0.25;
+    }
+
+    static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    private Set<Integer> candidates(String needle, Map<Long, Set<Integer>> grams, Map<Integer, String> texts) {
+        if (needle.length() < GRAM) {
+            return texts.keySet();
+        }
+
+        Set<Integer> smallest = null;
+        List<Set<Integer>> postings = new ArrayList<>();
+        for (int i = 0; i + GRAM <= needle.length(); i++) {
+            Set<Integer> posting = grams.get(gram(needle, i));
+            if (posting == null) {
+                return Set.of();
+            }
+            postings.add(posting);
+            if (smallest == null || posting.size() < smallest.size()) {
+                smallest = posting;
+            }
+        }
+
+        Set<Integer> result = new HashSet<>(smallest);
+        for (Set<Integer> posting : postings) {
+            if (posting != smallest) {
+                result.retainAll(posting);
+            }
+        }
+        return result;
+    }
+
+    private void suggestTitles(NavigableMap<String, Set<Integer>> starts, String prefix, int limit,
+                               Map<Integer, FilmSuggestion> suggestions) {
+        for (Map.Entry<String, Set<Integer>> entry : starts.tailMap(prefix, true).entrySet()) {
+            if (suggestions.size() >= limit || !entry.getKey().startsWith(prefix)) {
+                return;
+            }
+            for (int filmId : entry.getValue()) {
+                if (suggestions.size() >= limit) {
+                    return;
+                }
+                suggestions.putIfAbsent(filmId, new FilmSuggestion(filmId, displayTitles.get(filmId),
+                        firstDirectorName(filmId)));
+            }
+        }
+    }
+
+    private String firstDirectorName(int filmId) {
+        Set<Integer> directors = directorsByFilm.get(filmId);
+        if (directors == null || directors.isEmpty()) {
+            return null;
+        }
+        return displayDirectorNames.get(directors.stream().min(Integer::compare).orElseThrow());
+    }
+
+    private void putTitle(int filmId, String name) {
+        String title = normalize(name);
+        titles.put(filmId, title);
+        displayTitles.put(filmId, name);
+        addGrams(titleGrams, title, filmId);
+        addToSet(titleStarts, title, filmId);
+        for (int start : wordStarts(title)) {
+            if (start > 0) {
+                addToSet(titleWordStarts, title.substring(start), filmId);
+            }
+        }
+    }
+
+    private void putDirectorName(int directorId, String name) {
+        String normalized = normalize(name);
+        directorNames.put(directorId, normalized);
+        displayDirectorNames.put(directorId, name);
+        addGrams(directorGrams, normalized, directorId);
+        for (int start : wordStarts(normalized)) {
+            addToSet(directorWordStarts, normalized.substring(start), directorId);
+        }
+    }
+
+    private void removeDirectorName(int directorId) {
+        String name = directorNames.remove(directorId);
+        displayDirectorNames.remove(directorId);
+        if (name != null) {
+            removeGrams(directorGrams, name, directorId);
+            for (int start : wordStarts(name)) {
+                removeFromSet(directorWordStarts, name.substring(start), directorId);
+            }
+        }
+    }
+
+    private void link(int filmId, int directorId) {
+        directorsByFilm.computeIfAbsent(filmId, key -> new HashSet<>()).add(directorId);
+        filmsByDirector.computeIfAbsent(directorId, key -> new HashSet<>()).add(filmId);
+    }
+
+    private void removeFilm(int filmId) {
+        String title = titles.remove(filmId);
+        displayTitles.remove(filmId);
+        if (title != null) {
+            removeGrams(titleGrams, title, filmId);
+            removeFromSet(titleStarts, title, filmId);
+            for (int start : wordStarts(title)) {
+                if (start > 0) {
+                    removeFromSet(titleWordStarts, title.substring(start), filmId);
+                }
+            }
+        }
+        Set<Integer> directors = directorsByFilm.remove(filmId);
+        if (directors != null) {
+            for (Integer directorId : directors) {
+                removeFromSet(filmsByDirector, directorId, filmId);
+            }
+        }
+    }
+
+    private static void addGrams(Map<Long, Set<Integer>> grams, String text, int id) {
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.computeIfAbsent(gram(text, i), key -> new HashSet<>()).add(id);
+        }
+    }
+
+    private static void removeGrams(Map<Long, Set<Integer>> grams, String text, int id) {
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            removeFromSet(grams, gram(text, i), id);
+        }
+    }
+
+    /**
+     * Позиции, с которых начинаются слова: буква или цифра в начале строки либо после другого символа.
+     */
+    private static List<Integer> wordStarts(String text) {
+        List<Integer> starts = new ArrayList<>();
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isLetterOrDigit(text.charAt(i))
+                    && (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)))) {
+                starts.add(i);
+            }
+        }
+        return starts;
+    }
+
+    private static void addToSet(NavigableMap<String, Set<Integer>> map, String key, int value) {
+        map.computeIfAbsent(key, k -> new TreeSet<>()).add(value);
+    }
+
+    private static <K> void removeFromSet(Map<K, Set<Integer>> map, K key, int value) {
+        Set<Integer> values = map.get(key);
+        if (values != null) {
+            values.remove(value);
+            if (values.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Триграмма, упакованная в long: по 16 бит на символ.
+     */
+    private static long gram(String text, int from) {
+        return ((long) text.charAt(from) << 32) | ((long) text.charAt(from + 1) << 16) | text.charAt(from + 2);
+    }
+
+    /**
+     * Найденный фильм и качество совпадения от 0 до 1.
+     */
+    public record Match(int filmId, double quality) {
+    }
+}
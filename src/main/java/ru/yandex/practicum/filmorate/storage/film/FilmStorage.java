@@ -4,6 +4,7 @@ import ru.yandex.practicum.filmorate.controller.params.SearchBy;
 import ru.yandex.practicum.filmorate.controller.params.SortBy;
 import ru.yandex.practicum.filmorate.model.Film;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -14,13 +15,28 @@ public interface FilmStorage {
 
     List<Film> findAll();
 
+    List<Film> findAll(Integer afterId, int limit);
+
     Film findById(Integer id);
 
+    boolean exists(Integer id);
+
+    /**
+     * @return true, если существуют фильмы со всеми указанными id
+     */
+    boolean existsAll(Collection<Integer> ids);
+
+    List<Film> findAllByIds(List<Integer> ids);
+
+    List<Film> loadLikes(List<Film> films);
+
     void delete(Integer id);
 
-    void addLike(Integer filmId, Integer userId);
+    boolean addLike(Integer filmId, Integer userId);
+
+    boolean removeLike(Integer filmId, Integer userId);
 
-    void removeLike(Integer filmId, Integer userId);
+    int reconcileLikesCount();
 
     List<Film> findPopularFilms(Integer limit, Integer year, Integer genreId);
 
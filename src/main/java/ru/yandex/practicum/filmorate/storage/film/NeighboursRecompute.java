@@ -0,0 +1,203 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.storage.film.UserSimilarityModel.Neighbours;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Полный пересчёт соседей всех пользователей в {@link ForkJoinPool}.
+ * <p>
+ * Пользователи и фильмы перенумеровываются подряд с нуля, граф лайков хранится массивами плотных индексов.
+ * Диапазон пользователей делится пополам, пока не станет меньше {@link #LEAF_SIZE}. Каждый поток считает
+ * общие лайки в собственном массиве счётчиков по индексу пользователя, поэтому потоки не синхронизируются
+ * между собой и пересчёт масштабируется по числу ядер. Результат совпадает с
+ * {@link UserSimilarityModel#computeNeighbours(int)} для каждого пользователя.
+ */
+final class NeighboursRecompute {
+
+    private static final int LEAF_SIZE = 256;
+
+    private final int neighboursLimit;
+    private final int[] userIds;
+    private final int[][] userFilms;
+    private final int[][] filmUsers;
+    private final Neighbours[] result;
+
+    NeighboursRecompute(Map<Integer, int[]> likesByUser, Map<Integer, int[]> likersByFilm, int neighboursLimit) {
+        this.neighboursLimit = neighboursLimit;
+        this.userIds = sortedKeys(likesByUser);
+        int[] filmIds = sortedKeys(likersByFilm);
+
+        userFilms = new int[userIds.length][];
+        for (int u = 0; u < userIds.length; u++) {
+            userFilms[u] = toDense(likesByUser.get(userIds[u]), filmIds);
+        }
+        filmUsers = new int[filmIds.length][];
+        for (int f = 0; f < filmIds.length; f++) {
+            filmUsers[f] = toDense(likersByFilm.get(filmIds[f]), userIds);
+        }
+        result = new Neighbours[userIds.length];
+    }
+
+    Map<Integer, Neighbours> compute(ForkJoinPool pool) {
+        ThreadLocal<OverlapCounter> counters = ThreadLocal.withInitial(() -> new OverlapCounter(userIds.length));
+        pool.invoke(new Task(0, userIds.length, counters));
+
+        Map<Integer, Neighbours> neighbours = new HashMap<>(userIds.length * 4 / 3 + 1);
+        for (int u = 0; u < userIds.length; u++) {
+            neighbours.put(userIds[u], result[u]);
+        }
+        return neighbours;
+    }
+
+    private void computeRange(int from, int to, OverlapCounter counter) {
+        for (int u = from; u < to; u++) {
+            for (int f : userFilms[u]) {
+                for (int v : filmUsers[f]) {
+                    if (v != u) {
+                        counter.increment(v);
+                    }
+                }
+            }
+            result[u] = counter.drainTop(neighboursLimit, userIds);
+        }
+    }
+
+    private static int[] sortedKeys(Map<Integer, int[]> map) {
+        int[] keys = new int[map.size()];
+        int i = 0;
+        for (Integer key : map.keySet()) {
+            keys[i++] = key;
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private static int[] toDense(int[] ids, int[] sortedIds) {
+        int[] dense = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            dense[i] = Arrays.binarySearch(sortedIds, ids[i]);
+        }
+        return dense;
+    }
+
+    private final class Task extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final transient ThreadLocal<OverlapCounter> counters;
+
+        private Task(int from, int to, ThreadLocal<OverlapCounter> counters) {
+            this.from = from;
+            this.to = to;
+            this.counters = counters;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                computeRange(from, to, counters.get());
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Task(from, middle, counters), new Task(middle, to, counters));
+        }
+    }
+
+    /**
+     * Счётчики общих лайков одного потока: массив по плотному индексу пользователя и список
+     * затронутых индексов, чтобы обнулять только их.
+     */
+    private static final class OverlapCounter {
+        private final int[] counts;
+        private final int[] touched;
+        private int touchedSize;
+
+        private OverlapCounter(int users) {
+            counts = new int[users];
+            touched = new int[users];
+        }
+
+        private void increment(int user) {
+            if (counts[user]++ == 0) {
+                touched[touchedSize++] = user;
+            }
+        }
+
+        /**
+         * Выбирает {@code limit} пользователей с наибольшим числом общих лайков (при равенстве — с меньшим id)
+         * и обнуляет счётчики.
+         */
+        private Neighbours drainTop(int limit, int[] userIds) {
+            // Тот же ключ, что и в UserSimilarityModel: число общих лайков, затем инвертированный id
+            long[] top = new long[Math.min(limit, touchedSize)];
+            int size = 0;
+            for (int i = 0; i < touchedSize; i++) {
+                int user = touched[i];
+                long key = ((long) counts[user] << 32) | (Integer.MAX_VALUE - userIds[user]);
+                counts[user] = 0;
+                if (size < top.length) {
+                    top[size++] = key;
+                    siftUp(top, size - 1);
+                } else if (size > 0 && key > top[0]) {
+                    top[0] = key;
+                    siftDown(top, size);
+                }
+            }
+            touchedSize = 0;
+
+            Arrays.sort(top, 0, size);
+            int[] neighbourIds = new int[size];
+            int[] commonLikes = new int[size];
+            for (int i = 0; i < size; i++) {
+                long key = top[size - 1 - i];
+                neighbourIds[i] = Integer.MAX_VALUE - (int) key;
+                commonLikes[i] = (int) (key >>> 32);
+            }
+            return new Neighbours(neighbourIds, commonLikes);
+        }
+
+        /**
+         * Просеивание вверх в min-куче: на вершине остаётся худший из выбранных соседей.
+         */
+        private static void siftUp(long[] heap, int index) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (heap[parent] <= heap[index]) {
+                    return;
+                }
+                swap(heap, parent, index);
+                index = parent;
+            }
+        }
+
+        private static void siftDown(long[] heap, int size) {
+            int index = 0;
+            while (true) {
+                int smallest = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < size && heap[left] < heap[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && heap[right] < heap[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == index) {
+                    return;
+                }
+                swap(heap, index, smallest);
+                index = smallest;
+            }
+        }
+
+        private static void swap(long[] heap, int i, int j) {
+            long tmp = heap[i];
+            heap[i] = heap[j];
+            heap[j] = tmp;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Кэш лайков пользователей в виде {@link FilmIdBitmap}.
+ * <p>
+ * Множество лайков пользователя загружается из film_likes при первом обращении и дальше обновляется
+ * событиями лайков, поэтому общие фильмы двух пользователей считаются пересечением двух битовых карт
+ * без обращения к БД. Число пользователей в памяти ограничено {@code filmorate.likes-cache.max-users}.
+ * <p>
+ * Загрузка выполняется вне блокировки кэша. Чтобы изменение, пришедшее во время загрузки, не потерялось,
+ * каждое изменение увеличивает счётчик пользователя, а загруженная карта удаляется из кэша, если счётчик
+ * изменился, пока она читалась из БД.
+ */
+@Slf4j
+@Component
+public class UserLikesBitmapCache {
+
+    /**
+     * Число счётчиков изменений: счётчик выбирается по id пользователя.
+     */
+    private static final int STRIPES = 64;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache<Integer, FilmIdBitmap> likesByUser;
+
+    private final AtomicLongArray userChanges = new AtomicLongArray(STRIPES);
+    private final AtomicLong allChanges = new AtomicLong();
+
+    public UserLikesBitmapCache(JdbcTemplate jdbcTemplate,
+                                @Value("${filmorate.likes-cache.max-users:100000}") long maxUsers) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.likesByUser = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .build();
+        log.info("Кэш лайков пользователей: не более {} пользователей", maxUsers);
+    }
+
+    /**
+     * Возвращает id фильмов, которые лайкнули оба пользователя, по возрастанию.
+     */
+    public int[] commonFilms(int userId, int otherUserId) {
+        return likes(userId).and(likes(otherUserId));
+    }
+
+    public void onLikeChanged(int filmId, int userId, boolean added) {
+        userChanges.incrementAndGet(stripe(userId));
+        likesByUser.asMap().computeIfPresent(userId,
+                (key, likes) -> added ? likes.with(filmId) : likes.without(filmId));
+    }
+
+    public void onFilmDeleted(int filmId) {
+        allChanges.incrementAndGet();
+        likesByUser.asMap().replaceAll((userId, likes) -> likes.without(filmId));
+    }
+
+    public void onUserDeleted(int userId) {
+        userChanges.incrementAndGet(stripe(userId));
+        likesByUser.invalidate(userId);
+    }
+
+    /**
+     * Сбрасывает кэш: множества лайков будут заново загружены из БД при следующем обращении.
+     */
+    public void invalidateAll() {
+        allChanges.incrementAndGet();
+        likesByUser.invalidateAll();
+    }
+
+    public long size() {
+        return likesByUser.estimatedSize();
+    }
+
+    private FilmIdBitmap likes(int userId) {
+        FilmIdBitmap cached = likesByUser.getIfPresent(userId);
+        if (cached != null) {
+            return cached;
+        }
+
+        long changes = changes(userId);
+        FilmIdBitmap loaded = FilmIdBitmap.of(jdbcTemplate.queryForList(
+                "SELECT film_id FROM film_likes WHERE user_id = ?", Integer.class, userId).stream()
+                .mapToInt(Integer::intValue)
+                .toArray());
+        FilmIdBitmap current = likesByUser.asMap().putIfAbsent(userId, loaded);
+        if (current != null) {
+            return current;
+        }
+        // Изменение после этой проверки застанет карту в кэше и применится к ней
+        if (changes != changes(userId)) {
+            likesByUser.asMap().remove(userId, loaded);
+        }
+        return loaded;
+    }
+
+    private long changes(int userId) {
+        return allChanges.get() + userChanges.get(stripe(userId));
+    }
+
+    private static int stripe(int userId) {
+        return Math.floorMod(userId, STRIPES);
+    }
+}
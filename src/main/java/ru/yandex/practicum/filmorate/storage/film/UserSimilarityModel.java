@@ -0,0 +1,493 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Модель похожести пользователей по лайкам для рекомендаций.
+ * <p>
+ * Хранит граф лайков в виде отсортированных массивов int: фильмы каждого пользователя и пользователи,
+ * лайкнувшие каждый фильм. Для каждого пользователя заранее вычисляются N ближайших соседей —
+ * пользователей с наибольшим числом общих лайков. Рекомендации строятся по фильмам соседей,
+ * каждый фильм получает сумму числа общих лайков соседей, которые его лайкнули.
+ * <p>
+ * Модель строится из БД при старте приложения: соседи всех пользователей считаются параллельно
+ * в {@link ForkJoinPool} ({@link NeighboursRecompute}) и подменяют прежние целиком. После этого лайк меняет только массивы лайков,
+ * а соседи поставившего его пользователя помечаются устаревшими. Их пересчитывает
+ * {@link #refreshStale()} по расписанию или сам {@link #recommend(int)}, если пользователь запросил рекомендации раньше.
+ * <p>
+ * У остальных пользователей, лайкнувших тот же фильм, меняется только число общих лайков с этим пользователем.
+ * Помечать их всех устаревшими слишком дорого для популярных фильмов, поэтому их соседи пересчитываются лениво:
+ * {@link #recommend(int)} пересчитывает соседей, если после их расчёта менялись лайки фильмов, которые лайкнул
+ * пользователь, и прошло больше {@code filmorate.recommendations.max-neighbours-age}. Лайки других фильмов не меняют
+ * число общих лайков пользователя ни с кем, поэтому его соседи не устаревают. Полностью модель обновляет
+ * {@link #rebuild()}.
+ */
+@Slf4j
+@Component
+public class UserSimilarityModel {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int neighboursLimit;
+    private final long maxNeighboursAgeMillis;
+    private final ForkJoinPool pool;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, int[]> likesByUser = new HashMap<>();
+    private final Map<Integer, int[]> likersByFilm = new HashMap<>();
+    // Время последнего изменения лайков фильма, доступ под lock
+    private final Map<Integer, Long> likesChangedAt = new HashMap<>();
+    private long likesTotal;
+    // Изменения, пришедшие во время перестроения; не null только во время rebuild, доступ под lock
+    private List<Runnable> changesDuringRebuild;
+
+    private volatile Map<Integer, Neighbours> neighbours = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> staleSince = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> refreshedAt = new ConcurrentHashMap<>();
+
+    private volatile long lastBuildStartedAt;
+    private volatile long lastBuildMillis;
+    private volatile long lastBuildFinishedAt;
+
+    public UserSimilarityModel(JdbcTemplate jdbcTemplate,
+                               @Value("${filmorate.recommendations.neighbours:10}") int neighboursLimit,
+                               @Value("${filmorate.recommendations.max-neighbours-age:PT1M}") Duration maxNeighboursAge,
+                               @Value("${filmorate.recommendations.rebuild-parallelism:0}") int parallelism) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.neighboursLimit = neighboursLimit;
+        this.maxNeighboursAgeMillis = maxNeighboursAge.toMillis();
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Полностью перестраивает модель по таблице film_likes.
+     * <p>
+     * Изменения, пришедшие с начала перестроения, запоминаются и применяются к новому графу перед его
+     * публикацией, а затронутые ими пользователи снова помечаются устаревшими. Изменения графа идемпотентны,
+     * поэтому лайк, уже попавший в прочитанную таблицу, при повторном применении ничего не меняет.
+     */
+    @PostConstruct
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<Integer, IntList> userLikes = new HashMap<>();
+        Map<Integer, IntList> filmLikers = new HashMap<>();
+        jdbcTemplate.query("SELECT film_id, user_id FROM film_likes", rs -> {
+            int filmId = rs.getInt("film_id");
+            int userId = rs.getInt("user_id");
+            userLikes.computeIfAbsent(userId, key -> new IntList()).add(filmId);
+            filmLikers.computeIfAbsent(filmId, key -> new IntList()).add(userId);
+        });
+
+        Map<Integer, int[]> loadedLikesByUser = new HashMap<>();
+        Map<Integer, int[]> loadedLikersByFilm = new HashMap<>();
+        long loadedLikes = 0;
+        for (Map.Entry<Integer, IntList> entry : userLikes.entrySet()) {
+            loadedLikesByUser.put(entry.getKey(), entry.getValue().toSortedArray());
+            loadedLikes += entry.getValue().size();
+        }
+        filmLikers.forEach((filmId, users) -> loadedLikersByFilm.put(filmId, users.toSortedArray()));
+
+        // Соседи считаются по ещё не опубликованному графу без блокировки, запросы тем временем
+        // обслуживаются прежней моделью
+        Map<Integer, Neighbours> computed = new NeighboursRecompute(loadedLikesByUser, loadedLikersByFilm,
+                neighboursLimit).compute(pool);
+
+        int replayed;
+        lock.writeLock().lock();
+        try {
+            likesByUser.clear();
+            likesByUser.putAll(loadedLikesByUser);
+            likersByFilm.clear();
+            likersByFilm.putAll(loadedLikersByFilm);
+            likesTotal = loadedLikes;
+            neighbours = new ConcurrentHashMap<>(computed);
+            staleSince.clear();
+            refreshedAt.clear();
+            likesChangedAt.clear();
+            lastBuildStartedAt = start;
+            replayed = changesDuringRebuild.size();
+            changesDuringRebuild.forEach(Runnable::run);
+            changesDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        lastBuildFinishedAt = System.currentTimeMillis();
+        lastBuildMillis = lastBuildFinishedAt - start;
+        log.info("Модель похожести пользователей построена за {} мс, пользователей: {}, лайков: {}, потоков: {}, "
+                        + "изменений во время построения: {}", lastBuildMillis, userLikes.size(), loadedLikes,
+                pool.getParallelism(), replayed);
+    }
+
+    /**
+     * Возвращает id рекомендованных пользователю фильмов: фильмы соседей, которые пользователь ещё
+     * не лайкнул, по убыванию суммарной похожести лайкнувших их соседей, затем по количеству лайков и id.
+     */
+    public List<Integer> recommend(int userId) {
+        Neighbours userNeighbours = staleSince.containsKey(userId) || isOutdated(userId) ? refresh(userId)
+                : neighbours.get(userId);
+        if (userNeighbours == null || userNeighbours.userIds.length == 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            int[] ownLikes = likesByUser.getOrDefault(userId, EMPTY);
+            Map<Integer, int[]> scores = new HashMap<>();
+            for (int i = 0; i < userNeighbours.userIds.length; i++) {
+                int similarity = userNeighbours.commonLikes[i];
+                for (int filmId : likesByUser.getOrDefault(userNeighbours.userIds[i], EMPTY)) {
+                    if (Arrays.binarySearch(ownLikes, filmId) < 0) {
+                        scores.computeIfAbsent(filmId, key -> new int[1])[0] += similarity;
+                    }
+                }
+            }
+
+            List<Integer> filmIds = new ArrayList<>(scores.keySet());
+            filmIds.sort((a, b) -> {
+                int byScore = Integer.compare(scores.get(b)[0], scores.get(a)[0]);
+                if (byScore != 0) {
+                    return byScore;
+                }
+                int byLikes = Integer.compare(likersByFilm.getOrDefault(b, EMPTY).length,
+                        likersByFilm.getOrDefault(a, EMPTY).length);
+                return byLikes != 0 ? byLikes : Integer.compare(a, b);
+            });
+            return filmIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Учитывает добавленный или удалённый лайк. Соседи пользователя помечаются устаревшими, соседи остальных
+     * лайкнувших фильм пересчитываются лениво.
+     */
+    public void onLikeChanged(int filmId, int userId, boolean added) {
+        apply(() -> {
+            int[] likes = likesByUser.getOrDefault(userId, EMPTY);
+            int[] updatedLikes = added ? insert(likes, filmId) : remove(likes, filmId);
+            if (updatedLikes == likes) {
+                return;
+            }
+            putOrRemove(likesByUser, userId, updatedLikes);
+            putOrRemove(likersByFilm, filmId, added ? insert(likersByFilm.getOrDefault(filmId, EMPTY), userId)
+                    : remove(likersByFilm.getOrDefault(filmId, EMPTY), userId));
+            likesTotal += added ? 1 : -1;
+            likesChangedAt.put(filmId, System.currentTimeMillis());
+
+            markStale(userId);
+        });
+    }
+
+    public void onFilmDeleted(int filmId) {
+        apply(() -> {
+            int[] likers = likersByFilm.remove(filmId);
+            likesChangedAt.remove(filmId);
+            if (likers == null) {
+                return;
+            }
+            for (int userId : likers) {
+                putOrRemove(likesByUser, userId, remove(likesByUser.getOrDefault(userId, EMPTY), filmId));
+                markStale(userId);
+            }
+            likesTotal -= likers.length;
+        });
+    }
+
+    public void onUserDeleted(int userId) {
+        apply(() -> {
+            int[] likes = likesByUser.remove(userId);
+            neighbours.remove(userId);
+            staleSince.remove(userId);
+            refreshedAt.remove(userId);
+            if (likes == null) {
+                return;
+            }
+            for (int filmId : likes) {
+                int[] likers = remove(likersByFilm.getOrDefault(filmId, EMPTY), userId);
+                putOrRemove(likersByFilm, filmId, likers);
+                for (int likerId : likers) {
+                    markStale(likerId);
+                }
+            }
+            likesTotal -= likes.length;
+        });
+    }
+
+    /**
+     * Пересчитывает соседей пользователей, помеченных устаревшими.
+     */
+    public void refreshStale() {
+        for (Integer userId : List.copyOf(staleSince.keySet())) {
+            refresh(userId);
+        }
+    }
+
+    public long lastBuildMillis() {
+        return lastBuildMillis;
+    }
+
+    public int parallelism() {
+        return pool.getParallelism();
+    }
+
+    public long lastBuildFinishedAt() {
+        return lastBuildFinishedAt;
+    }
+
+    public int users() {
+        lock.readLock().lock();
+        try {
+            return likesByUser.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long likes() {
+        lock.readLock().lock();
+        try {
+            return likesTotal;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Общее количество сохранённых пар «пользователь — сосед».
+     */
+    public long neighbourEntries() {
+        long entries = 0;
+        for (Neighbours userNeighbours : neighbours.values()) {
+            entries += userNeighbours.userIds.length;
+        }
+        return entries;
+    }
+
+    public int staleUsers() {
+        return staleSince.size();
+    }
+
+    /**
+     * Сколько миллисекунд ждёт пересчёта самый давний устаревший пользователь, 0 если таких нет.
+     */
+    public long stalenessMillis() {
+        long now = System.currentTimeMillis();
+        long oldest = now;
+        for (Long markedAt : staleSince.values()) {
+            oldest = Math.min(oldest, markedAt);
+        }
+        return now - oldest;
+    }
+
+    Neighbours neighboursOf(int userId) {
+        return neighbours.get(userId);
+    }
+
+    private Neighbours refresh(int userId) {
+        // Отметка снимается до пересчёта: лайк, пришедший во время пересчёта, поставит её снова
+        staleSince.remove(userId);
+        Neighbours userNeighbours;
+        long computedAt;
+        lock.readLock().lock();
+        try {
+            if (!likesByUser.containsKey(userId)) {
+                neighbours.remove(userId);
+                return null;
+            }
+            // Время берётся под блокировкой: изменение после неё получит время не раньше этого
+            computedAt = System.currentTimeMillis();
+            userNeighbours = computeNeighbours(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+        neighbours.put(userId, userNeighbours);
+        refreshedAt.put(userId, computedAt);
+        return userNeighbours;
+    }
+
+    /**
+     * Соседи пользователя посчитаны не менее max-neighbours-age назад и после этого менялись лайки хотя бы одного
+     * из фильмов, которые он лайкнул.
+     */
+    private boolean isOutdated(int userId) {
+        long computedAt = refreshedAt.getOrDefault(userId, lastBuildStartedAt);
+        if (System.currentTimeMillis() - computedAt < maxNeighboursAgeMillis) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            for (int filmId : likesByUser.getOrDefault(userId, EMPTY)) {
+                if (likesChangedAt.getOrDefault(filmId, 0L) >= computedAt) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Считает число общих лайков со всеми пользователями, лайкнувшими те же фильмы, и оставляет
+     * {@code neighboursLimit} лучших. Вызывается под блокировкой графа лайков.
+     */
+    Neighbours computeNeighbours(int userId) {
+        int[] likes = likesByUser.getOrDefault(userId, EMPTY);
+        int total = 0;
+        for (int filmId : likes) {
+            total += likersByFilm.getOrDefault(filmId, EMPTY).length;
+        }
+
+        // Все вхождения соседей по общим фильмам: после сортировки длина серии равна числу общих лайков
+        int[] coLikers = new int[total];
+        int size = 0;
+        for (int filmId : likes) {
+            for (int likerId : likersByFilm.getOrDefault(filmId, EMPTY)) {
+                if (likerId != userId) {
+                    coLikers[size++] = likerId;
+                }
+            }
+        }
+        Arrays.sort(coLikers, 0, size);
+
+        // Ключ: число общих лайков в старших битах, инвертированный id в младших,
+        // поэтому по убыванию ключа идут самые похожие, а при равенстве — меньший id
+        long[] ranked = new long[size];
+        int candidates = 0;
+        for (int i = 0; i < size; ) {
+            int j = i;
+            while (j < size && coLikers[j] == coLikers[i]) {
+                j++;
+            }
+            ranked[candidates++] = ((long) (j - i) << 32) | (Integer.MAX_VALUE - coLikers[i]);
+            i = j;
+        }
+        Arrays.sort(ranked, 0, candidates);
+
+        int count = Math.min(neighboursLimit, candidates);
+        int[] userIds = new int[count];
+        int[] commonLikes = new int[count];
+        for (int i = 0; i < count; i++) {
+            long key = ranked[candidates - 1 - i];
+            userIds[i] = Integer.MAX_VALUE - (int) key;
+            commonLikes[i] = (int) (key >>> 32);
+        }
+        return new Neighbours(userIds, commonLikes);
+    }
+
+    /**
+     * Применяет изменение к графу, а во время перестроения ещё и запоминает его для нового графа.
+     */
+    private void apply(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void markStale(int userId) {
+        staleSince.putIfAbsent(userId, System.currentTimeMillis());
+    }
+
+    private static void putOrRemove(Map<Integer, int[]> map, int key, int[] values) {
+        if (values.length == 0) {
+            map.remove(key);
+        } else {
+            map.put(key, values);
+        }
+    }
+
+    /**
+     * Вставляет значение в отсортированный массив. Если значение уже есть, возвращает тот же массив.
+     */
+    private static int[] insert(int[] values, int value) {
+        int index = Arrays.binarySearch(values, value);
+        if (index >= 0) {
+            return values;
+        }
+        int position = -index - 1;
+        int[] result = new int[values.length + 1];
+        System.arraycopy(values, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(values, position, result, position + 1, values.length - position);
+        return result;
+    }
+
+    /**
+     * Удаляет значение из отсортированного массива. Если значения нет, возвращает тот же массив.
+     */
+    private static int[] remove(int[] values, int value) {
+        int index = Arrays.binarySearch(values, value);
+        if (index < 0) {
+            return values;
+        }
+        int[] result = new int[values.length - 1];
+        System.arraycopy(values, 0, result, 0, index);
+        System.arraycopy(values, index + 1, result, index, values.length - index - 1);
+        return result;
+    }
+
+    /**
+     * Соседи пользователя по убыванию числа общих лайков.
+     */
+    record Neighbours(int[] userIds, int[] commonLikes) {
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private int[] toSortedArray() {
+            int[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.storage.genre;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -7,9 +8,15 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.IdDictionary;
 
 import java.util.List;
 
+/**
+ * Справочник жанров. Таблица genres загружается в память целиком при старте и перечитывается только
+ * при явном сбросе ({@link #invalidate()}). Запрос жанра, которого нет в памяти, не обращается к БД; только
+ * жанр, на который ссылается фильм ({@link #findReferencedById(Integer)}), перечитывает справочник.
+ */
 @Slf4j
 @Repository
 @RequiredArgsConstructor
@@ -17,33 +24,57 @@ public class GenreDbStorage implements GenreStorage {
 
     private final JdbcTemplate jdbcTemplate;
 
+    private volatile IdDictionary<Genre> genres = IdDictionary.empty();
+
     @Override
     public List<Genre> findAll() {
-        String sql = "SELECT genre_id, name FROM genres ORDER BY genre_id";
-        List<Genre> genres = jdbcTemplate.query(sql, genreRowMapper());
-        log.debug("Получен список всех жанров, количество: {}", genres.size());
-        return genres;
+        return genres.values();
     }
 
     @Override
     public Genre findById(Integer id) {
-        String sql = "SELECT genre_id, name FROM genres WHERE genre_id = ?";
-        List<Genre> genres = jdbcTemplate.query(sql, genreRowMapper(), id);
+        Genre genre = genres.get(id);
+        if (genre == null) {
+            throw new NotFoundException("Жанр с id " + id + " не найден");
+        }
+        return genre;
+    }
 
-        if (genres.isEmpty()) {
+    @Override
+    public Genre findReferencedById(Integer id) {
+        Genre genre = genres.get(id);
+        if (genre == null) {
+            genre = reloadIfMissing(id).get(id);
+        }
+        if (genre == null) {
             throw new NotFoundException("Жанр с id " + id + " не найден");
         }
+        return genre;
+    }
 
-        log.debug("Получен жанр с id: {}", id);
-        return genres.getFirst();
+    @Override
+    @PostConstruct
+    public void invalidate() {
+        reload();
+    }
+
+    private synchronized IdDictionary<Genre> reloadIfMissing(Integer id) {
+        // Пока поток ждал блокировку, справочник мог перечитать другой поток
+        if (genres.get(id) == null) {
+            reload();
+        }
+        return genres;
+    }
+
+    private synchronized void reload() {
+        String sql = "SELECT genre_id, name FROM genres ORDER BY genre_id";
+        genres = IdDictionary.of(jdbcTemplate.query(sql, genreRowMapper()), Genre::getId);
+        log.debug("Загружен справочник жанров, количество: {}", genres.size());
     }
 
     private RowMapper<Genre> genreRowMapper() {
         return (rs, rowNum) -> {
-            Genre genre = new Genre();
-            genre.setId(rs.getInt("genre_id"));
-            genre.setName(rs.getString("name"));
-            return genre;
+            return new Genre(rs.getInt("genre_id"), rs.getString("name"));
         };
     }
 }
@@ -8,4 +8,15 @@ public interface GenreStorage {
     List<Genre> findAll();
 
     Genre findById(Integer id);
+
+    /**
+     * Жанр для фильма, который ссылается на него в БД. Если жанра нет в памяти (строка добавлена после загрузки
+     * справочника), справочник перечитывается.
+     */
+    Genre findReferencedById(Integer id);
+
+    /**
+     * Перечитывает справочник жанров из БД.
+     */
+    void invalidate();
 }
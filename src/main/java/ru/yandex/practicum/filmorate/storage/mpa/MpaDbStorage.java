@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.storage.mpa;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -7,9 +8,15 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.IdDictionary;
 
 import java.util.List;
 
+/**
+ * Справочник рейтингов MPA. Таблица mpa_rating загружается в память целиком при старте и перечитывается
+ * только при явном сбросе ({@link #invalidate()}). Запрос рейтинга, которого нет в памяти, не обращается к БД;
+ * только рейтинг, на который ссылается фильм ({@link #findReferencedById(Integer)}), перечитывает справочник.
+ */
 @Slf4j
 @Repository
 @RequiredArgsConstructor
@@ -17,33 +24,57 @@ public class MpaDbStorage implements MpaStorage {
 
     private final JdbcTemplate jdbcTemplate;
 
+    private volatile IdDictionary<Mpa> ratings = IdDictionary.empty();
+
     @Override
     public List<Mpa> findAll() {
-        String sql = "SELECT mpa_id, name FROM mpa_rating ORDER BY mpa_id";
-        List<Mpa> mpaList = jdbcTemplate.query(sql, mpaRowMapper());
-        log.debug("Получен список всех рейтингов MPA, количество: {}", mpaList.size());
-        return mpaList;
+        return ratings.values();
     }
 
     @Override
     public Mpa findById(Integer id) {
-        String sql = "SELECT mpa_id, name FROM mpa_rating WHERE mpa_id = ?";
-        List<Mpa> mpaList = jdbcTemplate.query(sql, mpaRowMapper(), id);
+        Mpa mpa = ratings.get(id);
+        if (mpa == null) {
+            throw new NotFoundException("Рейтинг MPA с id " + id + " не найден");
+        }
+        return mpa;
+    }
 
-        if (mpaList.isEmpty()) {
+    @Override
+    public Mpa findReferencedById(Integer id) {
+        Mpa mpa = ratings.get(id);
+        if (mpa == null) {
+            mpa = reloadIfMissing(id).get(id);
+        }
+        if (mpa == null) {
             throw new NotFoundException("Рейтинг MPA с id " + id + " не найден");
         }
+        return mpa;
+    }
 
-        log.debug("Получен рейтинг MPA с id: {}", id);
-        return mpaList.getFirst();
+    @Override
+    @PostConstruct
+    public void invalidate() {
+        reload();
+    }
+
+    private synchronized IdDictionary<Mpa> reloadIfMissing(Integer id) {
+        // Пока поток ждал блокировку, справочник мог перечитать другой поток
+        if (ratings.get(id) == null) {
+            reload();
+        }
+        return ratings;
+    }
+
+    private synchronized void reload() {
+        String sql = "SELECT mpa_id, name FROM mpa_rating ORDER BY mpa_id";
+        ratings = IdDictionary.of(jdbcTemplate.query(sql, mpaRowMapper()), Mpa::getId);
+        log.debug("Загружен справочник рейтингов MPA, количество: {}", ratings.size());
     }
 
     private RowMapper<Mpa> mpaRowMapper() {
         return (rs, rowNum) -> {
-            Mpa mpa = new Mpa();
-            mpa.setId(rs.getInt("mpa_id"));
-            mpa.setName(rs.getString("name"));
-            return mpa;
+            return new Mpa(rs.getInt("mpa_id"), rs.getString("name"));
         };
     }
 }
@@ -8,4 +8,15 @@ public interface MpaStorage {
     List<Mpa> findAll();
 
     Mpa findById(Integer id);
+
+    /**
+     * Рейтинг для фильма, который ссылается на него в БД. Если рейтинга нет в памяти (строка добавлена после загрузки
+     * справочника), справочник перечитывается.
+     */
+    Mpa findReferencedById(Integer id);
+
+    /**
+     * Перечитывает справочник рейтингов MPA из БД.
+     */
+    void invalidate();
 }
@@ -3,15 +3,20 @@ package ru.yandex.practicum.filmorate.storage.review;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlParameterValue;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Review;
 
 import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.Collection;
 import java.util.List;
 
 @Slf4j
@@ -20,6 +25,9 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ReviewDbStorage implements ReviewStorage {
 
+    private static final String SELECT_QUERY =
+            "SELECT review_id, content, is_positive, user_id, film_id, useful FROM reviews ";
+
     private final JdbcTemplate jdbcTemplate;
 
     @Override
@@ -46,7 +54,7 @@ public class ReviewDbStorage implements ReviewStorage {
 
     @Override
     public Review update(Review review) {
-        findById(review.getReviewId()); // Проверяем существование
+        checkReviewExists(review.getReviewId()); // Проверяем существование
 
         String sql = "UPDATE reviews SET content = ?, is_positive = ? WHERE review_id = ?";
         jdbcTemplate.update(sql,
@@ -72,13 +80,7 @@ public class ReviewDbStorage implements ReviewStorage {
 
     @Override
     public Review findById(Integer reviewId) {
-        String sql = "SELECT r.review_id, r.content, r.is_positive, r.user_id, r.film_id, " +
-                "COALESCE(SUM(CASE WHEN rr.is_like = TRUE THEN 1 WHEN rr.is_like = FALSE THEN -1 ELSE 0 END), 0) AS useful "
-                +
-                "FROM reviews AS r " +
-                "LEFT JOIN review_ratings AS rr ON r.review_id = rr.review_id " +
-                "WHERE r.review_id = ? " +
-                "GROUP BY r.review_id, r.content, r.is_positive, r.user_id, r.film_id";
+        String sql = SELECT_QUERY + "WHERE review_id = ?";
 
         List<Review> reviews = jdbcTemplate.query(sql, reviewRowMapper(), reviewId);
 
@@ -90,15 +92,26 @@ public class ReviewDbStorage implements ReviewStorage {
         return reviews.getFirst();
     }
 
+    @Override
+    public boolean exists(Integer reviewId) {
+        String sql = "SELECT EXISTS (SELECT 1 FROM reviews WHERE review_id = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, reviewId));
+    }
+
+    @Override
+    public boolean existsAll(Collection<Integer> reviewIds) {
+        Integer[] distinctIds = reviewIds.stream().distinct().toArray(Integer[]::new);
+        if (distinctIds.length == 0) {
+            return true;
+        }
+        String sql = "SELECT COUNT(*) FROM reviews WHERE review_id = ANY(?)";
+        Integer found = jdbcTemplate.queryForObject(sql, Integer.class, new SqlParameterValue(Types.ARRAY, distinctIds));
+        return found != null && found == distinctIds.length;
+    }
+
     @Override
     public List<Review> findAll() {
-        String sql = "SELECT r.review_id, r.content, r.is_positive, r.user_id, r.film_id, " +
-                "COALESCE(SUM(CASE WHEN rr.is_like = TRUE THEN 1 WHEN rr.is_like = FALSE THEN -1 ELSE 0 END), 0) AS useful "
-                +
-                "FROM reviews AS r " +
-                "LEFT JOIN review_ratings AS rr ON r.review_id = rr.review_id " +
-                "GROUP BY r.review_id, r.content, r.is_positive, r.user_id, r.film_id " +
-                "ORDER BY useful DESC";
+        String sql = SELECT_QUERY + "ORDER BY useful DESC";
 
         List<Review> reviews = jdbcTemplate.query(sql, reviewRowMapper());
 
@@ -106,29 +119,19 @@ public class ReviewDbStorage implements ReviewStorage {
         return reviews;
     }
 
+    /**
+     * Возвращает самые полезные отзывы: сортировка и фильтр по фильму идут по индексам
+     * {@code (useful DESC)} и {@code (film_id, useful DESC)}, поэтому читаются только первые count строк.
+     */
     @Override
     public List<Review> findByFilmId(Integer filmId, int count) {
-        String sql;
         List<Review> reviews;
 
         if (filmId == null) {
-            sql = "SELECT r.review_id, r.content, r.is_positive, r.user_id, r.film_id, " +
-                    "COALESCE(SUM(CASE WHEN rr.is_like = TRUE THEN 1 WHEN rr.is_like = FALSE THEN -1 ELSE 0 END), 0) AS useful "
-                    +
-                    "FROM reviews AS r " +
-                    "LEFT JOIN review_ratings AS rr ON r.review_id = rr.review_id " +
-                    "GROUP BY r.review_id, r.content, r.is_positive, r.user_id, r.film_id " +
-                    "ORDER BY useful DESC LIMIT ?";
+            String sql = SELECT_QUERY + "ORDER BY useful DESC LIMIT ?";
             reviews = jdbcTemplate.query(sql, reviewRowMapper(), count);
         } else {
-            sql = "SELECT r.review_id, r.content, r.is_positive, r.user_id, r.film_id, " +
-                    "COALESCE(SUM(CASE WHEN rr.is_like = TRUE THEN 1 WHEN rr.is_like = FALSE THEN -1 ELSE 0 END), 0) AS useful "
-                    +
-                    "FROM reviews AS r " +
-                    "LEFT JOIN review_ratings AS rr ON r.review_id = rr.review_id " +
-                    "WHERE r.film_id = ? " +
-                    "GROUP BY r.review_id, r.content, r.is_positive, r.user_id, r.film_id " +
-                    "ORDER BY useful DESC LIMIT ?";
+            String sql = SELECT_QUERY + "WHERE film_id = ? ORDER BY useful DESC LIMIT ?";
             reviews = jdbcTemplate.query(sql, reviewRowMapper(), filmId, count);
         }
 
@@ -137,60 +140,101 @@ public class ReviewDbStorage implements ReviewStorage {
     }
 
     @Override
+    @Transactional
     public void addLike(Integer reviewId, Integer userId) {
-        checkReviewExists(reviewId); // Проверяем существование отзыва
-
-        // MERGE: обновляем существующую оценку или добавляем новую
-        String mergeSql = "MERGE INTO review_ratings (review_id, user_id, is_like) " +
-                "KEY (review_id, user_id) VALUES (?, ?, TRUE)";
-        jdbcTemplate.update(mergeSql, reviewId, userId);
-
+        rate(reviewId, userId, true);
         log.debug("Пользователь {} поставил лайк отзыву {}", userId, reviewId);
     }
 
     @Override
+    @Transactional
     public void addDislike(Integer reviewId, Integer userId) {
-        checkReviewExists(reviewId); // Проверяем существование отзыва
-
-        // MERGE: обновляем существующую оценку или добавляем новую
-        String mergeSql = "MERGE INTO review_ratings (review_id, user_id, is_like) " +
-                "KEY (review_id, user_id) VALUES (?, ?, FALSE)";
-        jdbcTemplate.update(mergeSql, reviewId, userId);
-
+        rate(reviewId, userId, false);
         log.debug("Пользователь {} поставил дизлайк отзыву {}", userId, reviewId);
     }
 
     @Override
+    @Transactional
     public void removeLike(Integer reviewId, Integer userId) {
         removeRating(reviewId, userId, true);
         log.debug("Пользователь {} удалил лайк у отзыва {}", userId, reviewId);
     }
 
     @Override
+    @Transactional
     public void removeDislike(Integer reviewId, Integer userId) {
         removeRating(reviewId, userId, false);
         log.debug("Пользователь {} удалил дизлайк у отзыва {}", userId, reviewId);
     }
 
+    /**
+     * Пересчитывает reviews.useful по таблице review_ratings для отзывов, у которых рейтинг разошёлся
+     * с фактической суммой оценок.
+     *
+     * @return количество исправленных отзывов
+     */
     @Override
-    public Integer getUsefulRating(Integer reviewId) {
-        String sql = "SELECT COALESCE(SUM(CASE WHEN is_like = TRUE THEN 1 WHEN is_like = FALSE THEN -1 ELSE 0 END), 0) "
-                +
-                "FROM review_ratings WHERE review_id = ?";
-        return jdbcTemplate.queryForObject(sql, Integer.class, reviewId);
+    public int reconcileUseful() {
+        String sql = """
+                UPDATE reviews r
+                SET useful = (SELECT COALESCE(SUM(CASE WHEN rr.is_like THEN 1 ELSE -1 END), 0)
+                              FROM review_ratings rr WHERE rr.review_id = r.review_id)
+                WHERE useful <> (SELECT COALESCE(SUM(CASE WHEN rr.is_like THEN 1 ELSE -1 END), 0)
+                                 FROM review_ratings rr WHERE rr.review_id = r.review_id)
+                """;
+        int updated = jdbcTemplate.update(sql);
+
+        log.debug("Пересчитаны рейтинги полезности отзывов, исправлено отзывов: {}", updated);
+        return updated;
     }
 
-    private void removeRating(Integer reviewId, Integer userId, Boolean isLike) {
-        checkReviewExists(reviewId); // Проверяем существование отзыва
+    /**
+     * Ставит оценку и меняет reviews.useful на точную разницу: ±2, если оценка сменилась на противоположную,
+     * ±1 для новой оценки и 0 для повторной. Существование отзыва проверяется только при ошибке вставки.
+     */
+    private void rate(Integer reviewId, Integer userId, boolean isLike) {
+        String flipSql = "UPDATE review_ratings SET is_like = ? WHERE review_id = ? AND user_id = ? AND is_like = ?";
+        if (jdbcTemplate.update(flipSql, isLike, reviewId, userId, !isLike) > 0) {
+            updateUseful(reviewId, isLike ? 2 : -2);
+            return;
+        }
+
+        String insertSql = """
+                MERGE INTO review_ratings AS rr
+                USING (VALUES (CAST(? AS INTEGER), CAST(? AS INTEGER), CAST(? AS BOOLEAN)))
+                    AS s (review_id, user_id, is_like)
+                ON rr.review_id = s.review_id AND rr.user_id = s.user_id
+                WHEN NOT MATCHED THEN INSERT (review_id, user_id, is_like) VALUES (s.review_id, s.user_id, s.is_like)
+                """;
+        int inserted;
+        try {
+            inserted = jdbcTemplate.update(insertSql, reviewId, userId, isLike);
+        } catch (DataIntegrityViolationException e) {
+            checkReviewExists(reviewId);
+            throw e;
+        }
 
+        if (inserted > 0) {
+            updateUseful(reviewId, isLike ? 1 : -1);
+        }
+    }
+
+    private void removeRating(Integer reviewId, Integer userId, boolean isLike) {
         String sql = "DELETE FROM review_ratings WHERE review_id = ? AND user_id = ? AND is_like = ?";
-        jdbcTemplate.update(sql, reviewId, userId, isLike);
+        if (jdbcTemplate.update(sql, reviewId, userId, isLike) > 0) {
+            updateUseful(reviewId, isLike ? -1 : 1);
+        } else {
+            checkReviewExists(reviewId);
+        }
+    }
+
+    private void updateUseful(int reviewId, int delta) {
+        String sql = "UPDATE reviews SET useful = useful + ? WHERE review_id = ?";
+        jdbcTemplate.update(sql, delta, reviewId);
     }
 
     private void checkReviewExists(Integer reviewId) {
-        String sql = "SELECT COUNT(*) FROM reviews WHERE review_id = ?";
-        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, reviewId);
-        if (count == null || count == 0) {
+        if (!exists(reviewId)) {
             throw new NotFoundException("Отзыв с id " + reviewId + " не найден");
         }
     }
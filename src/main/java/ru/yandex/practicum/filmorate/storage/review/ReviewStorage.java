@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.storage.review;
 
 import ru.yandex.practicum.filmorate.model.Review;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ReviewStorage {
@@ -13,6 +14,13 @@ public interface ReviewStorage {
 
     Review findById(Integer reviewId);
 
+    boolean exists(Integer reviewId);
+
+    /**
+     * @return true, если существуют отзывы со всеми указанными id
+     */
+    boolean existsAll(Collection<Integer> reviewIds);
+
     List<Review> findAll();
 
     List<Review> findByFilmId(Integer filmId, int count);
@@ -25,5 +33,5 @@ public interface ReviewStorage {
 
     void removeDislike(Integer reviewId, Integer userId);
 
-    Integer getUsefulRating(Integer reviewId);
+    int reconcileUseful();
 }
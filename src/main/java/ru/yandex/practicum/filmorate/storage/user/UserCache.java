@@ -0,0 +1,187 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.FriendshipStatus;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Кеш пользователей перед {@link UserStorage}.
+ * <p>
+ * Запись хранит профиль пользователя и его друзей в виде отсортированного массива id и битовой маски
+ * подтверждённых дружб, без {@code Map<Integer, FriendshipStatus>} с упакованными ключами. Поэтому проверка
+ * существования пользователя, список друзей и общие друзья обслуживаются из памяти.
+ * <p>
+ * Запись удаляется при изменении профиля, дружбы или удалении пользователя ({@link #invalidate(int...)},
+ * {@link #onUserDeleted(int)}). Если изменение выполняется в транзакции, запись удаляется ещё раз
+ * после её завершения, чтобы в кеш не попали данные, прочитанные до фиксации.
+ */
+@Slf4j
+@Component
+public class UserCache {
+
+    private final UserStorage userStorage;
+    private final Cache<Integer, Entry> users;
+
+    public UserCache(UserStorage userStorage,
+                     @Value("${filmorate.user-cache.max-users:100000}") long maxUsers) {
+        this.userStorage = userStorage;
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .recordStats()
+                .build();
+        log.info("Кеш пользователей: не более {} пользователей", maxUsers);
+    }
+
+    /**
+     * @throws NotFoundException если пользователя нет в БД
+     */
+    public User get(int userId) {
+        return entry(userId).toUser();
+    }
+
+    /**
+     * Пользователь из кеша существует наверняка, для остальных выполняется дешёвая проверка в БД
+     * без загрузки профиля и друзей в кеш.
+     */
+    public boolean exists(int userId) {
+        return users.getIfPresent(userId) != null || userStorage.exists(userId);
+    }
+
+    /**
+     * @return id друзей пользователя по возрастанию
+     * @throws NotFoundException если пользователя нет в БД
+     */
+    public int[] friendIds(int userId) {
+        return entry(userId).friendIds().clone();
+    }
+
+    /**
+     * Возвращает пользователей с указанными id по возрастанию id; отсутствующие в кеше загружаются из БД
+     * одним запросом, несуществующие id пропускаются.
+     */
+    public List<User> getAll(Collection<Integer> userIds) {
+        Map<Integer, Entry> entries = users.getAll(userIds, missing -> {
+            Map<Integer, Entry> loaded = new HashMap<>();
+            for (User user : userStorage.findAllByIds(new ArrayList<>(missing))) {
+                loaded.put(user.getId(), Entry.of(user));
+            }
+            return loaded;
+        });
+        return entries.values().stream()
+                .sorted((a, b) -> Integer.compare(a.id(), b.id()))
+                .map(Entry::toUser)
+                .toList();
+    }
+
+    /**
+     * Общие друзья двух пользователей: пересечение отсортированных массивов их друзей.
+     */
+    public List<User> commonFriends(int userId, int otherUserId) {
+        int[] friends = entry(userId).friendIds();
+        int[] otherFriends = entry(otherUserId).friendIds();
+
+        List<Integer> common = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < friends.length && j < otherFriends.length) {
+            if (friends[i] < otherFriends[j]) {
+                i++;
+            } else if (friends[i] > otherFriends[j]) {
+                j++;
+            } else {
+                common.add(friends[i]);
+                i++;
+                j++;
+            }
+        }
+        return getAll(common);
+    }
+
+    public void invalidate(int... userIds) {
+        evict(userIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(userIds);
+                }
+            });
+        }
+    }
+
+    /**
+     * Удаляет пользователя и записи всех, у кого он был в друзьях: дружбы удаляются каскадно.
+     */
+    public void onUserDeleted(int userId) {
+        invalidate(userId);
+        users.asMap().values().removeIf(entry -> Arrays.binarySearch(entry.friendIds(), userId) >= 0);
+    }
+
+    public void invalidateAll() {
+        users.invalidateAll();
+    }
+
+    public long size() {
+        return users.estimatedSize();
+    }
+
+    private Entry entry(int userId) {
+        return users.get(userId, id -> Entry.of(userStorage.findById(id)));
+    }
+
+    private void evict(int[] userIds) {
+        for (int userId : userIds) {
+            users.invalidate(userId);
+        }
+    }
+
+    /**
+     * Профиль пользователя и друзья: {@code friendIds} отсортирован, бит i в {@code confirmed} установлен,
+     * если дружба с {@code friendIds[i]} подтверждена.
+     */
+    record Entry(int id, String email, String login, String name, LocalDate birthday, int[] friendIds,
+                 BitSet confirmed) {
+
+        static Entry of(User user) {
+            int[] friendIds = user.getFriends().keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            BitSet confirmed = new BitSet(friendIds.length);
+            for (int i = 0; i < friendIds.length; i++) {
+                if (user.getFriendshipStatus(friendIds[i]) == FriendshipStatus.CONFIRMED) {
+                    confirmed.set(i);
+                }
+            }
+            return new Entry(user.getId(), user.getEmail(), user.getLogin(), user.getName(), user.getBirthday(),
+                    friendIds, confirmed);
+        }
+
+        User toUser() {
+            User user = new User();
+            user.setId(id);
+            user.setEmail(email);
+            user.setLogin(login);
+            user.setName(name);
+            user.setBirthday(birthday);
+            for (int i = 0; i < friendIds.length; i++) {
+                user.addFriend(friendIds[i], confirmed.get(i) ? FriendshipStatus.CONFIRMED
+                        : FriendshipStatus.UNCONFIRMED);
+            }
+            return user;
+        }
+    }
+}
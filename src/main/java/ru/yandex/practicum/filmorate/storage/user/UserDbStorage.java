@@ -4,16 +4,24 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.FriendshipStatus;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,7 +32,19 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class UserDbStorage implements UserStorage {
 
+    private static final String FRIENDS_BY_USER_IDS_QUERY = """
+            SELECT user_id, friend_id, status
+            FROM friendship
+            WHERE user_id = ANY(:userIds)
+            """;
+
+    /**
+     * Максимальное количество идентификаторов в одном массиве ANY(...).
+     */
+    private static final int IN_CLAUSE_BATCH_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbc;
 
     @Override
     public User create(User user) {
@@ -51,7 +71,7 @@ public class UserDbStorage implements UserStorage {
 
     @Override
     public User update(User user) {
-        findById(user.getId());
+        checkUserExists(user.getId());
 
         if (user.getName() == null || user.getName().isBlank()) {
             user.setName(user.getLogin());
@@ -74,18 +94,32 @@ public class UserDbStorage implements UserStorage {
         String sql = "SELECT user_id, email, login, name, birthday FROM users";
         List<User> users = jdbcTemplate.query(sql, userRowMapper());
 
-        // Загружаем друзей для каждого пользователя
-        for (User user : users) {
-            Map<Integer, FriendshipStatus> friends = loadFriends(user.getId());
-            for (Map.Entry<Integer, FriendshipStatus> entry : friends.entrySet()) {
-                user.addFriend(entry.getKey(), entry.getValue());
-            }
-        }
+        // Таблица выбирается целиком, поэтому дружбы тоже читаем одним запросом без фильтра
+        Map<Integer, User> usersById = indexById(users);
+        jdbcTemplate.query("SELECT user_id, friend_id, status FROM friendship", friendsHandler(usersById));
 
         log.debug("Получен список всех пользователей, количество: {}", users.size());
         return users;
     }
 
+    /**
+     * Возвращает страницу пользователей, отсортированных по id, начиная со следующего после afterId
+     * (keyset pagination по первичному ключу).
+     *
+     * @param afterId id последнего пользователя предыдущей страницы или null для первой страницы
+     * @param limit   максимальный размер страницы
+     */
+    @Override
+    public List<User> findAll(Integer afterId, int limit) {
+        String sql = "SELECT user_id, email, login, name, birthday FROM users " +
+                "WHERE user_id > ? ORDER BY user_id LIMIT ?";
+        List<User> users = withFriends(jdbcTemplate.query(sql, userRowMapper(), afterId == null ? 0 : afterId,
+                limit));
+
+        log.debug("Получена страница пользователей после id {}, количество: {}", afterId, users.size());
+        return users;
+    }
+
     @Override
     public User findById(Integer id) {
         String sql = "SELECT user_id, email, login, name, birthday FROM users WHERE user_id = ?";
@@ -105,7 +139,73 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
-    public void delete(Integer id) {
+    public boolean exists(Integer id) {
+        String sql = "SELECT EXISTS (SELECT 1 FROM users WHERE user_id = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, id));
+    }
+
+    /**
+     * Проверяет существование пользователей одним запросом по первичному ключу на каждые
+     * {@link #IN_CLAUSE_BATCH_SIZE} различных id, профили и друзья не загружаются.
+     */
+    @Override
+    public boolean existsAll(Collection<Integer> ids) {
+        for (List<Integer> batch : batches(ids.stream().distinct().toList())) {
+            String sql = "SELECT COUNT(*) FROM users WHERE user_id = ANY(:userIds)";
+            Integer found = namedJdbc.queryForObject(sql, userIdsParameter(batch), Integer.class);
+            if (found == null || found < batch.size()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает пользователей с указанными id, отсортированных по id, вместе с их друзьями.
+     * Несуществующие id пропускаются.
+     */
+    @Override
+    public List<User> findAllByIds(Collection<Integer> ids) {
+        List<User> users = new ArrayList<>();
+        for (List<Integer> batch : batches(new ArrayList<>(ids))) {
+            String sql = "SELECT user_id, email, login, name, birthday FROM users WHERE user_id = ANY(:userIds)";
+            users.addAll(namedJdbc.query(sql, userIdsParameter(batch), userRowMapper()));
+        }
+        users.sort(Comparator.comparing(User::getId));
+
+        log.debug("Получены пользователи по списку id, количество: {}", users.size());
+        return withFriends(users);
+    }
+
+    /**
+     * Удаляет пользователя. Его лайки и оценки отзывов удаляются каскадно, поэтому в той же транзакции
+     * уменьшаем денормализованный счётчик likes_count у лайкнутых им фильмов и снимаем его оценки
+     * с рейтинга useful отзывов.
+     *
+     * @return id фильмов, которые лайкал пользователь
+     */
+    @Override
+    @Transactional
+    public List<Integer> delete(Integer id) {
+        List<Integer> likedFilmIds = jdbcTemplate.queryForList("SELECT film_id FROM film_likes WHERE user_id = ?",
+                Integer.class, id);
+
+        String decrementLikesSql = """
+                UPDATE films
+                SET likes_count = likes_count - 1
+                WHERE film_id IN (SELECT film_id FROM film_likes WHERE user_id = ?)
+                """;
+        jdbcTemplate.update(decrementLikesSql, id);
+
+        String revertRatingsSql = """
+                UPDATE reviews r
+                SET useful = useful - (SELECT CASE WHEN rr.is_like THEN 1 ELSE -1 END
+                                       FROM review_ratings rr
+                                       WHERE rr.review_id = r.review_id AND rr.user_id = ?)
+                WHERE review_id IN (SELECT review_id FROM review_ratings WHERE user_id = ?)
+                """;
+        jdbcTemplate.update(revertRatingsSql, id, id);
+
         String sql = "DELETE FROM users WHERE user_id = ?";
         int rowsAffected = jdbcTemplate.update(sql, id);
 
@@ -114,12 +214,14 @@ public class UserDbStorage implements UserStorage {
         }
 
         log.debug("Удалён пользователь с id: {}", id);
+        return likedFilmIds;
     }
 
     @Override
+    @Transactional
     public void addFriend(Integer userId, Integer friendId) {
-        findById(userId);
-        findById(friendId);
+        checkUserExists(userId);
+        checkUserExists(friendId);
 
         // Проверяем, есть ли уже заявка от друга
         String checkSql = "SELECT status FROM friendship WHERE user_id = ? AND friend_id = ?";
@@ -145,9 +247,10 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
+    @Transactional
     public void removeFriend(Integer userId, Integer friendId) {
-        findById(userId);
-        findById(friendId);
+        checkUserExists(userId);
+        checkUserExists(friendId);
 
         // Удаляем только одностороннюю связь от userId к friendId
         String sql = "DELETE FROM friendship WHERE user_id = ? AND friend_id = ?";
@@ -156,6 +259,12 @@ public class UserDbStorage implements UserStorage {
         log.debug("Пользователь {} удалил из друзей пользователя {}", userId, friendId);
     }
 
+    private void checkUserExists(Integer id) {
+        if (!exists(id)) {
+            throw new NotFoundException("Пользователь с id " + id + " не найден");
+        }
+    }
+
     private RowMapper<User> userRowMapper() {
         return (rs, rowNum) -> {
             User user = new User();
@@ -168,6 +277,54 @@ public class UserDbStorage implements UserStorage {
         };
     }
 
+    /**
+     * Загружает друзей сразу для всех переданных пользователей одним запросом
+     * на каждые {@link #IN_CLAUSE_BATCH_SIZE} пользователей и раскладывает их в памяти.
+     */
+    private List<User> withFriends(List<User> users) {
+        Map<Integer, User> usersById = indexById(users);
+
+        for (List<Integer> batch : batches(new ArrayList<>(usersById.keySet()))) {
+            namedJdbc.query(FRIENDS_BY_USER_IDS_QUERY, userIdsParameter(batch), friendsHandler(usersById));
+        }
+        return users;
+    }
+
+    /**
+     * Список id передаётся одним параметром-массивом для {@code = ANY(:userIds)}, как и в {@code FilmDbStorage}.
+     */
+    private static MapSqlParameterSource userIdsParameter(List<Integer> userIds) {
+        return new MapSqlParameterSource().addValue("userIds", userIds.toArray(new Integer[0]), Types.ARRAY);
+    }
+
+    /**
+     * Разбивает список id на части не длиннее {@link #IN_CLAUSE_BATCH_SIZE}.
+     */
+    private List<List<Integer>> batches(List<Integer> ids) {
+        List<List<Integer>> batches = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_BATCH_SIZE) {
+            batches.add(ids.subList(from, Math.min(from + IN_CLAUSE_BATCH_SIZE, ids.size())));
+        }
+        return batches;
+    }
+
+    private Map<Integer, User> indexById(List<User> users) {
+        Map<Integer, User> usersById = new HashMap<>();
+        for (User user : users) {
+            usersById.put(user.getId(), user);
+        }
+        return usersById;
+    }
+
+    private RowCallbackHandler friendsHandler(Map<Integer, User> usersById) {
+        return rs -> {
+            User user = usersById.get(rs.getInt("user_id"));
+            if (user != null) {
+                user.addFriend(rs.getInt("friend_id"), FriendshipStatus.valueOf(rs.getString("status")));
+            }
+        };
+    }
+
     private Map<Integer, FriendshipStatus> loadFriends(int userId) {
         String sql = "SELECT friend_id, status FROM friendship WHERE user_id = ?";
         Map<Integer, FriendshipStatus> friends = new HashMap<>();
@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.storage.user;
 
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface UserStorage {
@@ -11,9 +12,23 @@ public interface UserStorage {
 
     List<User> findAll();
 
+    List<User> findAll(Integer afterId, int limit);
+
     User findById(Integer id);
 
-    void delete(Integer id);
+    boolean exists(Integer id);
+
+    /**
+     * @return true, если существуют пользователи со всеми указанными id
+     */
+    boolean existsAll(Collection<Integer> ids);
+
+    List<User> findAllByIds(Collection<Integer> ids);
+
+    /**
+     * @return id фильмов, лайки которых удалены вместе с пользователем
+     */
+    List<Integer> delete(Integer id);
 
     void addFriend(Integer userId, Integer friendId);
 
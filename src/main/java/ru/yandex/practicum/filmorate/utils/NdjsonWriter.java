@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Формирует ответ в формате NDJSON (по одному JSON-объекту на строку).
+ * Объекты сериализуются сразу в поток ответа по мере того, как их отдаёт источник,
+ * поэтому ответ не накапливается в памяти целиком.
+ */
+@Component
+@RequiredArgsConstructor
+public class NdjsonWriter {
+    private final ObjectMapper objectMapper;
+
+    /**
+     * @param source источник объектов: получает потребителя и передаёт ему объекты по одному
+     * @return тело ответа для StreamingResponseBody
+     */
+    public <T> StreamingResponseBody write(Consumer<Consumer<T>> source) {
+        return outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.setRootValueSeparator(null);
+                source.accept(item -> {
+                    try {
+                        generator.writeObject(item);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+    }
+}
@@ -52,7 +52,8 @@ CREATE TABLE IF NOT EXISTS films
     description  VARCHAR(500),
     release_date DATE,
     duration     INTEGER,
-    mpa_id       INTEGER REFERENCES mpa_rating (mpa_id)
+    mpa_id       INTEGER REFERENCES mpa_rating (mpa_id),
+    likes_count  INTEGER      NOT NULL DEFAULT 0
 );
 
 -- Таблица связи фильмов и жанров
@@ -95,7 +96,8 @@ CREATE TABLE IF NOT EXISTS reviews
     content     VARCHAR(1000) NOT NULL,
     is_positive BOOLEAN       NOT NULL,
     user_id     INTEGER REFERENCES users (user_id) ON DELETE CASCADE,
-    film_id     INTEGER REFERENCES films (film_id) ON DELETE CASCADE
+    film_id     INTEGER REFERENCES films (film_id) ON DELETE CASCADE,
+    useful      INTEGER       NOT NULL DEFAULT 0
 );
 
 -- Таблица оценок отзывов (лайки/дизлайки)
@@ -115,12 +117,16 @@ CREATE TABLE IF NOT EXISTS feed
     entity_id INTEGER NOT NULL,
     event_type VARCHAR(20) NOT NULL,
     operation VARCHAR(20) NOT NULL,
-    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    restored_at TIMESTAMP
 );
 
 -- Индексы для оптимизации запросов
+-- Фильмы
+CREATE INDEX IF NOT EXISTS idx_films_likes_count ON films (likes_count DESC);
 -- Отзывы
-CREATE INDEX IF NOT EXISTS idx_reviews_film_id ON reviews (film_id);
+CREATE INDEX IF NOT EXISTS idx_reviews_film_id_useful ON reviews (film_id, useful DESC);
+CREATE INDEX IF NOT EXISTS idx_reviews_useful ON reviews (useful DESC);
 CREATE INDEX IF NOT EXISTS idx_review_ratings_review_id ON review_ratings (review_id);
 -- Лента
-CREATE INDEX IF NOT EXISTS idx_feed_user_id ON feed (user_id);
+CREATE INDEX IF NOT EXISTS idx_feed_user_id_event_id ON feed (user_id, event_id);
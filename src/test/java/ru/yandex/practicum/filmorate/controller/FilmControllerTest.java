@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class FilmControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private FilmPopularityIndex popularityIndex;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void shouldNotApplyRolledBackLikeToIndexes() {
+        int likes = popularityIndex.likes(3);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            filmService.addLike(3, 2);
+            assertThat(popularityIndex.likes(3)).isEqualTo(likes);
+            status.setRollbackOnly();
+        });
+
+        assertThat(popularityIndex.likes(3)).isEqualTo(likes);
+    }
+
+    @Test
+    void shouldReturnLikesCountWithoutLikesByDefault() throws Exception {
+        mockMvc.perform(get("/films/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.likesCount").value(2))
+                .andExpect(jsonPath("$.likes").doesNotExist());
+    }
+
+    @Test
+    void shouldReturnLikesWhenRequested() throws Exception {
+        mockMvc.perform(get("/films/popular").param("count", "1").param("include", "likes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[0].likes.length()").value(2));
+    }
+
+    @Test
+    void shouldReturnFilmsPage() throws Exception {
+        mockMvc.perform(get("/films").param("after", "1").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(2));
+    }
+
+    @Test
+    void shouldStreamFilmsAsNdjson() throws Exception {
+        MvcResult result = mockMvc.perform(get("/films").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+
+        assertThat(body.lines())
+                .hasSizeGreaterThanOrEqualTo(3)
+                .allMatch(line -> line.startsWith("{\"id\":"));
+    }
+
+    @Test
+    void shouldReturn404ForNonExistentDirector() throws Exception {
+        String film = """
+                {"name": "Film", "description": "Description", "releaseDate": "2000-01-01", "duration": 100,
+                 "mpa": {"id": 1}, "directors": [{"id": 999}]}
+                """;
+        mockMvc.perform(post("/films").contentType(MediaType.APPLICATION_JSON).content(film))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Режиссер не найден"));
+    }
+
+    @Test
+    void shouldSuggestFilmsByPrefix() throws Exception {
+        mockMvc.perform(get("/films/search/suggest").param("query", "test film 2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(2))
+                .andExpect(jsonPath("$[0].name").value("Test Film 2"))
+                .andExpect(jsonPath("$[0].likesCount").doesNotExist());
+        mockMvc.perform(get("/films/search/suggest").param("query", "test").param("limit", "51"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldRejectUnknownInclude() throws Exception {
+        mockMvc.perform(get("/films").param("include", "unknown"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -71,4 +71,14 @@ class ReviewControllerTest {
         mockMvc.perform(get("/reviews/999"))
                 .andExpect(status().isNotFound());
     }
+
+    @Test
+    void shouldReturn404ForNonExistentFilmOrUser() throws Exception {
+        mockMvc.perform(get("/reviews").param("filmId", "999"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(put("/reviews/2/like/999"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(put("/reviews/999/like/1"))
+                .andExpect(status().isNotFound());
+    }
 }
@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.filmorate.model.feed.EventType;
+import ru.yandex.practicum.filmorate.model.feed.Operation;
+import ru.yandex.practicum.filmorate.service.FeedService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class UserControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private FeedService feedService;
+
+    @Test
+    void shouldReturnFeedPagesWithNextCursor() throws Exception {
+        int first = feedService.createEvent(3, 1, EventType.LIKE, Operation.ADD).getEventId();
+        int second = feedService.createEvent(3, 1, EventType.LIKE, Operation.REMOVE).getEventId();
+        int third = feedService.createEvent(3, 2, EventType.FRIEND, Operation.ADD).getEventId();
+
+        mockMvc.perform(get("/users/3/feed")
+                        .param("sinceEventId", String.valueOf(first - 1))
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", String.valueOf(second)))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].eventId").value(first))
+                .andExpect(jsonPath("$[1].eventId").value(second));
+
+        mockMvc.perform(get("/users/3/feed").param("sinceEventId", String.valueOf(second)).param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].eventId").value(third))
+                .andExpect(jsonPath("$[0].eventType").value("FRIEND"));
+
+        mockMvc.perform(get("/users/3/feed"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$[-1:].eventId").value(third));
+    }
+
+    @Test
+    void shouldReturnFriendsFeed() throws Exception {
+        int eventId = feedService.createEvent(1, 3, EventType.LIKE, Operation.ADD).getEventId();
+
+        mockMvc.perform(get("/users/2/feed/friends").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].eventId").value(eventId))
+                .andExpect(jsonPath("$[0].userId").value(1));
+
+        mockMvc.perform(get("/users/2/feed/friends").param("limit", "1001"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/users/999/feed/friends"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldStreamFeedFromLastEventId() throws Exception {
+        int first = feedService.createEvent(2, 1, EventType.LIKE, Operation.ADD).getEventId();
+        int second = feedService.createEvent(2, 3, EventType.FRIEND, Operation.ADD).getEventId();
+
+        MvcResult result = mockMvc.perform(get("/users/2/feed/stream").header("Last-Event-ID", first))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitContent(result, "id:" + second + "\n");
+
+        int live = feedService.createEvent(2, 1, EventType.LIKE, Operation.REMOVE).getEventId();
+        String content = awaitContent(result, "id:" + live + "\n");
+
+        assertThat(content).doesNotContain("id:" + first + "\n");
+        assertThat(content.split("id:" + second + "\n", -1)).hasSize(2);
+        assertThat(content.indexOf("id:" + second + "\n")).isLessThan(content.indexOf("id:" + live + "\n"));
+        assertThat(content).contains("\"eventType\":\"FRIEND\"");
+
+        mockMvc.perform(get("/users/999/feed/stream"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldRejectInvalidFeedPage() throws Exception {
+        mockMvc.perform(get("/users/3/feed").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/users/999/feed").param("limit", "10"))
+                .andExpect(status().isNotFound());
+    }
+
+    private String awaitContent(MvcResult result, String expected) throws Exception {
+        String content = result.getResponse().getContentAsString();
+        for (int attempt = 0; attempt < 100 && !content.contains(expected); attempt++) {
+            Thread.sleep(50);
+            content = result.getResponse().getContentAsString();
+        }
+        assertThat(content).contains(expected);
+        return content;
+    }
+}
@@ -0,0 +1,210 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.feed.EventType;
+import ru.yandex.practicum.filmorate.model.feed.FeedEvent;
+import ru.yandex.practicum.filmorate.model.feed.Operation;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import(FeedDbStorage.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FeedEventWriterTest {
+
+    private final FeedStorage feedStorage;
+    private final TransactionTemplate transactionTemplate;
+    private final List<FeedEventWriter> writers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        writers.forEach(FeedEventWriter::stop);
+    }
+
+    @Test
+    void testEventsAreVisibleToTheirUserBeforeScheduledFlush() {
+        FeedEventWriter writer = writer(100, 3, true);
+        int since = feedStorage.maxEventId();
+
+        FeedEvent first = writer.append(event(1));
+        FeedEvent second = writer.append(event(1));
+        assertThat(second.getEventId()).isEqualTo(first.getEventId() + 1).isEqualTo(since + 2);
+        assertThat(feedStorage.findByUserId(1, since, Integer.MAX_VALUE, 10)).isEmpty();
+        assertThat(writer.visibleEventId()).isEqualTo(since);
+
+        writer.awaitWritten(2);
+        assertThat(writer.pending()).isEqualTo(2);
+
+        writer.awaitWritten(1);
+        assertThat(writer.visibleEventId()).isEqualTo(second.getEventId());
+        assertThat(feedStorage.findByUserId(1, since, Integer.MAX_VALUE, 10))
+                .extracting(FeedEvent::getEventId)
+                .containsExactly(first.getEventId(), second.getEventId());
+        assertThat(writer.pending()).isZero();
+    }
+
+    @Test
+    void testFullBatchIsWrittenByWriterThread() throws InterruptedException {
+        FeedEventWriter writer = writer(100, 3, true);
+        int since = feedStorage.maxEventId();
+
+        for (int i = 0; i < 3; i++) {
+            writer.append(event(2));
+        }
+
+        for (int attempt = 0; attempt < 100 && writer.written() < 3; attempt++) {
+            Thread.sleep(50);
+        }
+        assertThat(feedStorage.findByUserId(2, since, Integer.MAX_VALUE, 10)).hasSize(3);
+    }
+
+    @Test
+    void testRolledBackEventIsNotWritten() {
+        FeedEventWriter writer = writer(100, 100, true);
+        int since = feedStorage.maxEventId();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            writer.append(event(3));
+            status.setRollbackOnly();
+        });
+        FeedEvent committed = transactionTemplate.execute(status -> writer.append(event(3)));
+
+        writer.awaitWritten(3);
+        assertThat(feedStorage.findByUserId(3, since, Integer.MAX_VALUE, 10))
+                .extracting(FeedEvent::getEventId)
+                .containsExactly(committed.getEventId());
+    }
+
+    @Test
+    void testEventIdsFollowCommitOrder() {
+        FeedEventWriter writer = writer(100, 100, true);
+        int since = feedStorage.maxEventId();
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        List<FeedEvent> events = new ArrayList<>();
+
+        FeedEvent committedLast = transactionTemplate.execute(status -> {
+            FeedEvent event = writer.append(event(1));
+            events.add(requiresNew.execute(inner -> writer.append(event(1))));
+            assertThat(event.getEventId()).isNull();
+            return event;
+        });
+        FeedEvent committedFirst = events.getFirst();
+
+        assertThat(committedFirst.getEventId()).isEqualTo(since + 1);
+        assertThat(committedLast.getEventId()).isEqualTo(since + 2);
+        writer.awaitWritten(1);
+        assertThat(feedStorage.findByUserId(1, since, Integer.MAX_VALUE, 10))
+                .extracting(FeedEvent::getEventId)
+                .containsExactly(committedFirst.getEventId(), committedLast.getEventId());
+    }
+
+    @Test
+    void testEventsAreWrittenSynchronouslyWhenBufferIsFull() {
+        FeedEventWriter writer = writer(2, 100, true);
+        int since = feedStorage.maxEventId();
+
+        for (int i = 0; i < 5; i++) {
+            writer.append(event(1));
+        }
+
+        assertThat(writer.synchronousWrites()).isEqualTo(3);
+        assertThat(feedStorage.findByUserId(1, since, Integer.MAX_VALUE, 10)).hasSize(3);
+        assertThat(writer.visibleEventId()).isEqualTo(since);
+
+        writer.flush();
+        assertThat(writer.written()).isEqualTo(5);
+        assertThat(writer.visibleEventId()).isEqualTo(since + 5);
+        assertThat(feedStorage.findByUserId(1, since, Integer.MAX_VALUE, 10)).hasSize(5);
+    }
+
+    @Test
+    void testBufferFlushedByCallerAfterCommitIsCommitted() {
+        FeedEventWriter writer = writer(1, 100, true);
+        int since = feedStorage.maxEventId();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            writer.append(event(2));
+            writer.append(event(2));
+        });
+
+        assertThat(writer.callerFlushes()).isPositive();
+        writer.flush();
+        assertThat(feedStorage.findByUserId(2, since, Integer.MAX_VALUE, 10)).hasSize(2);
+        assertThat(feedStorage.maxEventId()).isEqualTo(since + 2);
+    }
+
+    @Test
+    void testInvalidEventsAreDropped() {
+        FeedEventWriter writer = writer(100, 100, true);
+        int since = feedStorage.maxEventId();
+
+        writer.append(event(1));
+        writer.append(event(999));
+        writer.flush();
+
+        assertThat(writer.written()).isEqualTo(1);
+        assertThat(writer.dropped()).isEqualTo(1);
+        assertThat(writer.visibleEventId()).isEqualTo(since + 2);
+        assertThat(feedStorage.findByUserId(1, since, Integer.MAX_VALUE, 10)).hasSize(1);
+    }
+
+    @Test
+    void testUncommittedEventHoldsBackVisibleEventId() {
+        FeedEventWriter writer = writer(100, 100, false);
+        int since = feedStorage.maxEventId();
+
+        FeedEvent event = transactionTemplate.execute(status -> {
+            FeedEvent appended = writer.append(event(3));
+            assertThat(writer.visibleEventId()).isEqualTo(since);
+            return appended;
+        });
+
+        assertThat(event.getEventId()).isEqualTo(since + 1);
+        assertThat(writer.visibleEventId()).isEqualTo(since + 1);
+    }
+
+    @Test
+    void testSynchronousMode() {
+        FeedEventWriter writer = writer(100, 100, false);
+        int since = feedStorage.maxEventId();
+
+        FeedEvent event = writer.append(event(2));
+
+        assertThat(feedStorage.findByUserId(2, since, Integer.MAX_VALUE, 10)).containsExactly(event);
+        assertThat(writer.pending()).isZero();
+    }
+
+    private FeedEventWriter writer(int capacity, int batchSize, boolean async) {
+        FeedEventWriter writer = new FeedEventWriter(feedStorage, transactionTemplate.getTransactionManager(), capacity,
+                batchSize, Duration.ofHours(1), async);
+        writer.start();
+        writers.add(writer);
+        return writer;
+    }
+
+    private FeedEvent event(int userId) {
+        FeedEvent event = new FeedEvent();
+        event.setUserId(userId);
+        event.setEntityId(1);
+        event.setEventType(EventType.LIKE);
+        event.setOperation(Operation.ADD);
+        return event;
+    }
+}
@@ -0,0 +1,137 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.feed.EventType;
+import ru.yandex.practicum.filmorate.model.feed.FeedEvent;
+import ru.yandex.practicum.filmorate.model.feed.Operation;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import(FeedDbStorage.class)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FeedRetentionTest {
+
+    private static final long OLD = System.currentTimeMillis() - Duration.ofDays(100).toMillis();
+    private static final long RECENT = System.currentTimeMillis() - Duration.ofDays(1).toMillis();
+
+    private final FeedStorage feedStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    private Path archiveDir;
+
+    @BeforeEach
+    void setUp() {
+        // Удаление откатывается вместе с транзакцией теста
+        jdbcTemplate.update("DELETE FROM feed");
+    }
+
+    @Test
+    void testOldAndExcessEventsAreArchivedAndReplayed() {
+        feedStorage.createAll(List.of(event(1, 1, OLD), event(2, 1, OLD), event(3, 1, RECENT), event(4, 1, RECENT),
+                event(5, 1, RECENT), event(6, 2, RECENT)));
+        FeedArchive archive = new FeedArchive(feedStorage, new ObjectMapper(), archiveDir.toString());
+        FeedRetention retention = new FeedRetention(feedStorage, archive, Duration.ofDays(90), 2, 1,
+                Duration.ofDays(30));
+
+        FeedRetention.RetentionReport report = retention.run();
+
+        assertThat(report.prunedByAge()).isEqualTo(2);
+        assertThat(report.prunedByCap()).isEqualTo(1);
+        assertThat(retention.pruned()).isEqualTo(3);
+        assertThat(eventIds(1)).containsExactly(4, 5);
+        assertThat(eventIds(2)).containsExactly(6);
+        assertThat(archive.segments()).containsExactly(report.archiveSegment());
+
+        assertThat(archive.replay(report.archiveSegment())).isEqualTo(3);
+        assertThat(archive.replay(report.archiveSegment())).isEqualTo(3);
+        assertThat(eventIds(1)).containsExactly(1, 2, 3, 4, 5);
+        assertThat(feedStorage.findByEventId(1).getTimestamp()).isEqualTo(OLD);
+
+        FeedRetention.RetentionReport afterReplay = retention.run();
+        assertThat(afterReplay.prunedByAge() + afterReplay.prunedByCap()).isZero();
+        assertThat(eventIds(1)).containsExactly(1, 2, 3, 4, 5);
+    }
+
+    @Test
+    void testReplayedEventsArePrunedAgainAfterRestoreWindow() {
+        feedStorage.createAll(List.of(event(1, 1, OLD), event(2, 1, RECENT)));
+        FeedArchive archive = new FeedArchive(feedStorage, new ObjectMapper(), archiveDir.toString());
+        FeedRetention retention = new FeedRetention(feedStorage, archive, Duration.ofDays(90), 0, 100,
+                Duration.ofDays(30));
+
+        archive.replay(retention.run().archiveSegment());
+        assertThat(eventIds(1)).containsExactly(1, 2);
+        jdbcTemplate.update("UPDATE feed SET restored_at = DATEADD('DAY', -31, restored_at)");
+
+        assertThat(retention.run().prunedByAge()).isEqualTo(1);
+        assertThat(eventIds(1)).containsExactly(2);
+    }
+
+    @Test
+    void testNothingIsPrunedWithoutLimits() {
+        feedStorage.createAll(List.of(event(1, 1, OLD), event(2, 1, RECENT)));
+        FeedArchive archive = new FeedArchive(feedStorage, new ObjectMapper(), "");
+        FeedRetention retention = new FeedRetention(feedStorage, archive, Duration.ZERO, 0, 100, Duration.ZERO);
+
+        FeedRetention.RetentionReport report = retention.run();
+
+        assertThat(report.prunedByAge() + report.prunedByCap()).isZero();
+        assertThat(report.archiveSegment()).isNull();
+        assertThat(eventIds(1)).containsExactly(1, 2);
+        assertThat(archive.segments()).isEmpty();
+    }
+
+    @Test
+    void testTruncatedSegmentTailIsSkipped() throws IOException {
+        FeedArchive archive = new FeedArchive(feedStorage, new ObjectMapper(), archiveDir.toString());
+        Path segment = archive.newSegment();
+        archive.append(segment, List.of(event(1, 1, RECENT), event(2, 2, RECENT)));
+        long written = Files.size(segment);
+        archive.append(segment, List.of(event(3, 3, RECENT)));
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.setLength(written + 20);
+        }
+
+        assertThat(archive.replay(segment.getFileName().toString())).isEqualTo(2);
+        assertThat(eventIds(1)).containsExactly(1);
+        assertThat(eventIds(3)).isEmpty();
+        assertThatThrownBy(() -> archive.replay("../" + segment.getFileName()))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    private List<Integer> eventIds(int userId) {
+        return feedStorage.findAllByUserId(userId).stream().map(FeedEvent::getEventId).toList();
+    }
+
+    private FeedEvent event(int eventId, int userId, long timestamp) {
+        FeedEvent event = new FeedEvent();
+        event.setEventId(eventId);
+        event.setUserId(userId);
+        event.setEntityId(1);
+        event.setEventType(EventType.LIKE);
+        event.setOperation(Operation.ADD);
+        event.setTimestamp(timestamp);
+        return event;
+    }
+}
@@ -0,0 +1,149 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.feed.EventType;
+import ru.yandex.practicum.filmorate.model.feed.FeedEvent;
+import ru.yandex.practicum.filmorate.model.feed.Operation;
+import ru.yandex.practicum.filmorate.storage.user.UserCache;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FeedDbStorage.class, UserDbStorage.class, UserCache.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FriendsTimelineTest {
+
+    private final FeedStorage feedStorage;
+    private final UserCache userCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    private FeedEventWriter writer;
+    private FriendsTimeline timeline;
+
+    @BeforeEach
+    void setUp() {
+        writer = new FeedEventWriter(feedStorage, transactionManager, 100, 100, Duration.ofHours(1), false);
+        writer.start();
+        // Порог 1: пользователь, которого добавили в друзья двое, считается популярным
+        timeline = new FriendsTimeline(jdbcTemplate, feedStorage, writer, userCache, 3, 1, 100);
+        timeline.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM feed");
+        jdbcTemplate.update("DELETE FROM friendship WHERE user_id = 2 AND friend_id = 3");
+        userCache.invalidateAll();
+    }
+
+    @Test
+    void testEventsAreFannedOutToFriendsTimelines() {
+        assertThat(timeline.get(1, 10)).isEmpty();
+        assertThat(timeline.get(2, 10)).isEmpty();
+
+        FeedEvent first = create(2);
+        FeedEvent second = create(3);
+        FeedEvent own = create(1);
+
+        assertThat(timeline.get(1, 10)).containsExactly(second, first);
+        assertThat(timeline.get(1, 1)).containsExactly(second);
+        assertThat(timeline.get(2, 10)).containsExactly(own);
+        assertThat(timeline.get(3, 10)).isEmpty();
+
+        FeedEvent third = create(2);
+        FeedEvent fourth = create(2);
+        assertThat(timeline.get(1, 10)).containsExactly(fourth, third, second);
+    }
+
+    @Test
+    void testTimelineIsLoadedFromStorageOnFirstRead() {
+        FeedEvent first = create(3);
+        FeedEvent second = create(2);
+
+        assertThat(timeline.size()).isZero();
+        assertThat(timeline.get(1, 10)).extracting(FeedEvent::getEventId)
+                .containsExactly(second.getEventId(), first.getEventId());
+        assertThat(timeline.size()).isEqualTo(1);
+    }
+
+    @Test
+    void testEventsOfHighDegreeUserAreMergedOnRead() {
+        FeedEvent before = create(3);
+        assertThat(timeline.get(1, 10)).extracting(FeedEvent::getEventId).containsExactly(before.getEventId());
+
+        jdbcTemplate.update("INSERT INTO friendship (user_id, friend_id, status) VALUES (2, 3, 'UNCONFIRMED')");
+        userCache.invalidate(2, 3);
+        timeline.onFriendshipChanged(2, 3);
+
+        FeedEvent after = create(3);
+        FeedEvent normal = create(1);
+
+        assertThat(timeline.get(2, 10)).extracting(FeedEvent::getEventId)
+                .containsExactly(normal.getEventId(), after.getEventId(), before.getEventId());
+        assertThat(timeline.get(1, 10)).extracting(FeedEvent::getEventId)
+                .containsExactly(after.getEventId(), before.getEventId());
+
+        FeedEvent latest = create(3);
+        assertThat(timeline.get(1, 1)).extracting(FeedEvent::getEventId).containsExactly(latest.getEventId());
+    }
+
+    @Test
+    void testDeletedUserEventsAreRemoved() {
+        FeedEvent kept = create(2);
+        create(3);
+        assertThat(timeline.get(1, 10)).hasSize(2);
+
+        jdbcTemplate.update("DELETE FROM feed WHERE user_id = 3");
+        timeline.onUserDeleted(3, new int[0]);
+
+        assertThat(timeline.get(1, 10)).containsExactly(kept);
+    }
+
+    @Test
+    void testAuthorDroppingBelowThresholdAfterFollowerDeletionIsFannedOut() {
+        jdbcTemplate.update("INSERT INTO friendship (user_id, friend_id, status) VALUES (2, 3, 'UNCONFIRMED')");
+        userCache.invalidate(2, 3);
+        timeline.onFriendshipChanged(2, 3);
+
+        FeedEvent before = create(3);
+        assertThat(timeline.get(1, 10)).extracting(FeedEvent::getEventId).containsExactly(before.getEventId());
+
+        // Удаление подписчика 2 снимает с пользователя 3 одного подписчика, и он опускается ниже порога
+        jdbcTemplate.update("DELETE FROM friendship WHERE user_id = 2 AND friend_id = 3");
+        userCache.invalidate(2, 3);
+        timeline.onUserDeleted(2, new int[]{3});
+
+        FeedEvent after = create(3);
+        assertThat(timeline.get(1, 10)).extracting(FeedEvent::getEventId)
+                .containsExactly(after.getEventId(), before.getEventId());
+    }
+
+    private FeedEvent create(int userId) {
+        FeedEvent event = new FeedEvent();
+        event.setUserId(userId);
+        event.setEntityId(1);
+        event.setEventType(EventType.LIKE);
+        event.setOperation(Operation.ADD);
+
+        FeedEvent created = writer.append(event);
+        timeline.onEventCreated(created);
+        return created;
+    }
+}
@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.unit.DataSize;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmDbStorage.class, FilmRowMapper.class, GenreDbStorage.class, MpaDbStorage.class,
+        FilmPopularityIndex.class, FilmCardCache.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FilmCardCacheTest {
+
+    private final FilmDbStorage filmStorage;
+    private final FilmPopularityIndex popularityIndex;
+    private final FilmCardCache filmCardCache;
+    private final JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        popularityIndex.rebuild();
+        filmCardCache.invalidateAll();
+    }
+
+    @Test
+    void testReturnsCopiesOfCachedCard() {
+        long misses = filmCardCache.stats().missCount();
+        long hits = filmCardCache.stats().hitCount();
+
+        Film first = filmCardCache.get(1);
+        first.setName("Изменённое название");
+        first.getGenres().clear();
+        Film second = filmCardCache.get(1);
+
+        assertThat(second).isNotSameAs(first).isEqualTo(filmStorage.findById(1));
+        assertThat(filmCardCache.stats().missCount() - misses).isEqualTo(1);
+        assertThat(filmCardCache.stats().hitCount() - hits).isEqualTo(1);
+        assertThatThrownBy(() -> filmCardCache.get(999)).isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void testLikesDoNotInvalidateCard() {
+        assertThat(filmCardCache.get(1).getLikesCount()).isEqualTo(2);
+        long misses = filmCardCache.stats().missCount();
+
+        filmStorage.addLike(1, 3);
+        popularityIndex.onLikeChanged(1, 1);
+
+        assertThat(filmCardCache.get(1).getLikesCount()).isEqualTo(3);
+        assertThat(filmCardCache.stats().missCount()).isEqualTo(misses);
+    }
+
+    @Test
+    void testFilmAndDirectorChangesInvalidateCards() {
+        jdbcTemplate.update("INSERT INTO directors (director_id, name) VALUES (1, 'Режиссёр')");
+        jdbcTemplate.update("INSERT INTO film_directors (film_id, director_id) VALUES (1, 1)");
+        assertThat(filmCardCache.get(1).getDirectors()).containsExactly(new Director(1, "Режиссёр"));
+        assertThat(filmCardCache.get(2).getName()).isEqualTo("Test Film 2");
+
+        jdbcTemplate.update("UPDATE directors SET name = 'Другой режиссёр' WHERE director_id = 1");
+        jdbcTemplate.update("UPDATE films SET name = 'Новое название' WHERE film_id = 2");
+        assertThat(filmCardCache.get(1).getDirectors()).containsExactly(new Director(1, "Режиссёр"));
+        assertThat(filmCardCache.get(2).getName()).isEqualTo("Test Film 2");
+
+        filmCardCache.onDirectorChanged(1);
+        assertThat(filmCardCache.get(1).getDirectors()).containsExactly(new Director(1, "Другой режиссёр"));
+        assertThat(filmCardCache.get(2).getName()).isEqualTo("Test Film 2");
+
+        filmCardCache.invalidate(2);
+        assertThat(filmCardCache.get(2).getName()).isEqualTo("Новое название");
+    }
+
+    @Test
+    void testEvictsBySize() {
+        Film film = filmStorage.findById(1);
+        FilmCardCache smallCache = new FilmCardCache(filmStorage, popularityIndex,
+                DataSize.ofBytes(FilmCardCache.weight(film) * 2L));
+
+        for (int round = 0; round < 3; round++) {
+            for (int filmId = 1; filmId <= 3; filmId++) {
+                smallCache.get(filmId);
+            }
+        }
+        smallCache.cleanUp();
+
+        assertThat(smallCache.size()).isLessThan(3);
+        assertThat(smallCache.weightedSize()).isLessThanOrEqualTo(smallCache.maxWeight());
+        assertThat(smallCache.stats().evictionCount()).isPositive();
+    }
+}
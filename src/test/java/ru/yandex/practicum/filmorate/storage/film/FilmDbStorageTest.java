@@ -6,6 +6,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
@@ -27,6 +28,9 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 public class FilmDbStorageTest {
 
     private final FilmDbStorage filmStorage;
+    private final GenreDbStorage genreStorage;
+    private final MpaDbStorage mpaStorage;
+    private final JdbcTemplate jdbcTemplate;
 
     @Test
     void testFindFilmById() {
@@ -43,6 +47,16 @@ public class FilmDbStorageTest {
         assertThat(film.getMpa().getName()).isEqualTo("G");
     }
 
+    @Test
+    void testFilmsShareDictionaryInstances() {
+        for (Film film : filmStorage.findAll()) {
+            assertThat(film.getMpa()).isSameAs(mpaStorage.findById(film.getMpa().getId()));
+            for (Genre genre : film.getGenres()) {
+                assertThat(genre).isSameAs(genreStorage.findById(genre.getId()));
+            }
+        }
+    }
+
     @Test
     void testFindFilmById_FilmNotFound() {
         assertThatThrownBy(() -> filmStorage.findById(999))
@@ -50,6 +64,15 @@ public class FilmDbStorageTest {
                 .hasMessageContaining("Фильм с id 999 не найден");
     }
 
+    @Test
+    void testExists() {
+        assertThat(filmStorage.exists(1)).isTrue();
+        assertThat(filmStorage.exists(999)).isFalse();
+        assertThat(filmStorage.existsAll(List.of(3, 1, 3))).isTrue();
+        assertThat(filmStorage.existsAll(List.of(2, 999))).isFalse();
+        assertThat(filmStorage.existsAll(List.of())).isTrue();
+    }
+
     @Test
     void testFindAllFilms() {
         List<Film> films = filmStorage.findAll();
@@ -61,6 +84,41 @@ public class FilmDbStorageTest {
                 .contains("Test Film 1", "Test Film 2", "Test Film 3");
     }
 
+    @Test
+    void testFindAllFilms_LoadsGenresAndLikes() {
+        List<Film> films = filmStorage.findAll();
+
+        assertThat(films)
+                .extracting(Film::getId)
+                .containsExactly(1, 2, 3);
+        assertThat(films.get(0).getGenres())
+                .extracting(Genre::getId)
+                .containsExactly(1, 2);
+        assertThat(films)
+                .extracting(Film::getLikesCount)
+                .containsExactly(2, 1, 0);
+        assertThat(films)
+                .extracting(Film::getLikes)
+                .containsOnlyNulls();
+    }
+
+    @Test
+    void testFindAllFilms_Page() {
+        List<Film> firstPage = filmStorage.findAll(null, 2);
+        List<Film> secondPage = filmStorage.findAll(2, 2);
+
+        assertThat(firstPage)
+                .extracting(Film::getId)
+                .containsExactly(1, 2);
+        assertThat(firstPage.getFirst().getGenres())
+                .extracting(Genre::getId)
+                .containsExactly(1, 2);
+        assertThat(secondPage)
+                .extracting(Film::getId)
+                .containsExactly(3);
+        assertThat(filmStorage.findAll(3, 2)).isEmpty();
+    }
+
     @Test
     void testCreateFilm() {
         Film newFilm = new Film();
@@ -205,23 +263,53 @@ public class FilmDbStorageTest {
 
         filmStorage.addLike(createdFilm.getId(), 3);
 
-        Film updatedFilm = filmStorage.findById(createdFilm.getId());
+        Film updatedFilm = withLikes(filmStorage.findById(createdFilm.getId()));
         assertThat(updatedFilm.getLikes())
                 .contains(3);
     }
 
+    @Test
+    void testAddLike_UpdatesLikesCountOnlyOnce() {
+        filmStorage.addLike(3, 1);
+        filmStorage.addLike(3, 1);
+
+        assertThat(likesCount(3)).isEqualTo(1);
+
+        filmStorage.removeLike(3, 1);
+        filmStorage.removeLike(3, 1);
+
+        assertThat(likesCount(3)).isZero();
+    }
+
+    @Test
+    void testReconcileLikesCount() {
+        jdbcTemplate.update("UPDATE films SET likes_count = 42 WHERE film_id = 1");
+
+        int fixed = filmStorage.reconcileLikesCount();
+
+        assertThat(fixed).isEqualTo(1);
+        assertThat(likesCount(1)).isEqualTo(2);
+    }
+
     @Test
     void testAddLike_FilmNotFound() {
         assertThatThrownBy(() -> filmStorage.addLike(999, 1))
                 .isInstanceOf(NotFoundException.class);
     }
 
+    @Test
+    void testAddLike_UserNotFound() {
+        assertThatThrownBy(() -> filmStorage.addLike(1, 999))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessageContaining("Пользователь с id 999 не найден");
+    }
+
     @Test
     void testRemoveLike() {
         // Используем существующий лайк (фильм 1, пользователь 1)
         filmStorage.removeLike(1, 1);
 
-        Film film = filmStorage.findById(1);
+        Film film = withLikes(filmStorage.findById(1));
         assertThat(film.getLikes())
                 .doesNotContain(1);
     }
@@ -232,6 +320,13 @@ public class FilmDbStorageTest {
                 .isInstanceOf(NotFoundException.class);
     }
 
+    @Test
+    void testRemoveLike_UserNotFound() {
+        assertThatThrownBy(() -> filmStorage.removeLike(1, 999))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessageContaining("Пользователь с id 999 не найден");
+    }
+
     @Test
     void testLoadGenresCorrectly() {
         Film film1 = filmStorage.findById(1);
@@ -255,17 +350,17 @@ public class FilmDbStorageTest {
 
     @Test
     void testLoadLikesCorrectly() {
-        Film film1 = filmStorage.findById(1);
+        Film film1 = withLikes(filmStorage.findById(1));
         assertThat(film1.getLikes())
                 .hasSize(2)
                 .contains(1, 2);
 
-        Film film2 = filmStorage.findById(2);
+        Film film2 = withLikes(filmStorage.findById(2));
         assertThat(film2.getLikes())
                 .hasSize(1)
                 .contains(1);
 
-        Film film3 = filmStorage.findById(3);
+        Film film3 = withLikes(filmStorage.findById(3));
         assertThat(film3.getLikes())
                 .isEmpty();
     }
@@ -334,4 +429,12 @@ public class FilmDbStorageTest {
 
         assertThat(filmStorage.getCommonFilms(1,2).contains(createdFilm));
     }
+
+    private Film withLikes(Film film) {
+        return filmStorage.loadLikes(List.of(film)).getFirst();
+    }
+
+    private Integer likesCount(int filmId) {
+        return jdbcTemplate.queryForObject("SELECT likes_count FROM films WHERE film_id = ?", Integer.class, filmId);
+    }
 }
@@ -0,0 +1,120 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
+
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmDbStorage.class, FilmRowMapper.class, GenreDbStorage.class, MpaDbStorage.class, FilmPopularityIndex.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FilmPopularityIndexTest {
+
+    private final FilmDbStorage filmStorage;
+    private final FilmPopularityIndex popularityIndex;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testTopMatchesDatabase() {
+        popularityIndex.rebuild();
+
+        assertThat(popularityIndex.top(10, null, null))
+                .containsExactly(1, 2, 3)
+                .isEqualTo(popularFilmIds(10, null, null));
+    }
+
+    @Test
+    void testTopWithYearAndGenre() {
+        popularityIndex.rebuild();
+
+        assertThat(popularityIndex.top(10, 2000, null)).containsExactly(1);
+        assertThat(popularityIndex.top(10, null, 4)).containsExactly(3);
+        assertThat(popularityIndex.top(10, 2000, 4)).isEmpty();
+        assertThat(popularityIndex.top(10, 1999, null)).isEmpty();
+    }
+
+    @Test
+    void testOnLikeChanged() {
+        popularityIndex.rebuild();
+
+        filmStorage.addLike(3, 1);
+        popularityIndex.onLikeChanged(3, 1);
+        filmStorage.addLike(3, 2);
+        popularityIndex.onLikeChanged(3, 1);
+        filmStorage.addLike(3, 3);
+        popularityIndex.onLikeChanged(3, 1);
+
+        assertThat(popularityIndex.top(2, null, null))
+                .containsExactly(3, 1)
+                .isEqualTo(popularFilmIds(2, null, null));
+    }
+
+    @Test
+    void testLikeChangedDuringRebuildIsCountedOnce() {
+        AtomicReference<FilmPopularityIndex> index = new AtomicReference<>();
+        JdbcTemplate racingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource()) {
+            @Override
+            public void query(String sql, RowCallbackHandler rch) {
+                if (sql.contains("FROM film_genre")) {
+                    // Лайк фиксируется и применяется между чтением фильмов и подсчётом лайков
+                    filmStorage.addLike(3, 1);
+                    index.get().onLikeChanged(3, 1);
+                }
+                super.query(sql, rch);
+            }
+        };
+        index.set(new FilmPopularityIndex(racingJdbcTemplate));
+
+        index.get().rebuild();
+
+        assertThat(index.get().likes(3)).isEqualTo(1);
+    }
+
+    @Test
+    void testOnFilmSavedAndDeleted() {
+        popularityIndex.rebuild();
+
+        Film film = new Film();
+        film.setName("Indexed Film");
+        film.setDescription("Indexed");
+        film.setReleaseDate(LocalDate.of(2000, 5, 5));
+        film.setDuration(90);
+        film.setMpa(new Mpa(1, "G"));
+        LinkedHashSet<Genre> genres = new LinkedHashSet<>();
+        genres.add(new Genre(5, "Документальный"));
+        film.setGenres(genres);
+
+        Film created = filmStorage.create(film);
+        popularityIndex.onFilmSaved(created);
+
+        assertThat(popularityIndex.top(10, 2000, 5)).containsExactly(created.getId());
+
+        popularityIndex.onFilmDeleted(created.getId());
+
+        assertThat(popularityIndex.top(10, null, 5)).isEmpty();
+        assertThat(popularityIndex.top(10, 2000, null)).containsExactly(1);
+    }
+
+    private List<Integer> popularFilmIds(int count, Integer year, Integer genreId) {
+        return filmStorage.findPopularFilms(count, year, genreId).stream()
+                .map(Film::getId)
+                .toList();
+    }
+}
@@ -0,0 +1,134 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.controller.params.SearchBy;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSuggestion;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmDbStorage.class, FilmRowMapper.class, GenreDbStorage.class, MpaDbStorage.class, FilmSearchIndex.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FilmSearchIndexTest {
+
+    private final FilmDbStorage filmStorage;
+    private final FilmSearchIndex searchIndex;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testSearchByTitleMatchesSql() {
+        searchIndex.rebuild();
+
+        for (String query : List.of("film", "FiLm 2", "m 3", "fi", "t", "xyz")) {
+            assertThat(ids(searchIndex.search(query, true, false)))
+                    .as(query)
+                    .containsExactlyInAnyOrderElementsOf(sqlIds(query, EnumSet.of(SearchBy.TITLE)));
+        }
+        assertThat(ids(searchIndex.search("film 2", true, false))).containsExactly(2);
+    }
+
+    @Test
+    void testSearchByDirectorFollowsDirectorEvents() {
+        jdbcTemplate.update("INSERT INTO directors (director_id, name) VALUES (1, 'Кристофер Нолан')");
+        jdbcTemplate.update("INSERT INTO film_directors (film_id, director_id) VALUES (1, 1)");
+        searchIndex.rebuild();
+
+        assertThat(ids(searchIndex.search("нол", false, true)))
+                .containsExactly(1)
+                .containsExactlyElementsOf(sqlIds("нол", EnumSet.of(SearchBy.DIRECTOR)));
+        assertThat(ids(searchIndex.search("нол", true, false))).isEmpty();
+        assertThat(ids(searchIndex.search("film 3", true, true))).containsExactly(3);
+
+        searchIndex.onDirectorSaved(new Director(1, "Квентин Тарантино"));
+        assertThat(ids(searchIndex.search("нол", false, true))).isEmpty();
+        assertThat(ids(searchIndex.search("тарант", false, true))).containsExactly(1);
+
+        searchIndex.onDirectorDeleted(1);
+        assertThat(ids(searchIndex.search("тарант", false, true))).isEmpty();
+    }
+
+    @Test
+    void testFilmEventsUpdateIndex() {
+        searchIndex.rebuild();
+
+        Film film = new Film();
+        film.setId(100);
+        film.setName("Новый фильм");
+        film.getDirectors().add(new Director(7, "Неизвестный"));
+        searchIndex.onDirectorSaved(new Director(7, "Неизвестный"));
+        searchIndex.onFilmSaved(film);
+        assertThat(ids(searchIndex.search("НОВ", true, false))).containsExactly(100);
+        assertThat(ids(searchIndex.search("известн", false, true))).containsExactly(100);
+
+        film.setName("Старый фильм");
+        film.getDirectors().clear();
+        searchIndex.onFilmSaved(film);
+        assertThat(ids(searchIndex.search("нов", true, false))).isEmpty();
+        assertThat(ids(searchIndex.search("известн", false, true))).isEmpty();
+        assertThat(ids(searchIndex.search("стар", true, false))).containsExactly(100);
+
+        searchIndex.onFilmDeleted(100);
+        assertThat(ids(searchIndex.search("стар", true, false))).isEmpty();
+        assertThat(searchIndex.size()).isEqualTo(3);
+    }
+
+    @Test
+    void testSuggestRanksTitleStartsThenWordsThenDirectors() {
+        jdbcTemplate.update("INSERT INTO directors (director_id, name) VALUES (1, 'Филипп Нолан')");
+        jdbcTemplate.update("INSERT INTO film_directors (film_id, director_id) VALUES (3, 1)");
+        jdbcTemplate.update("UPDATE films SET name = 'Фильм про test' WHERE film_id = 2");
+        searchIndex.rebuild();
+
+        assertThat(searchIndex.suggest("TE", 10))
+                .extracting(FilmSuggestion::getId)
+                .containsExactly(1, 3, 2);
+        assertThat(searchIndex.suggest("фил", 10))
+                .containsExactly(new FilmSuggestion(2, "Фильм про test", null),
+                        new FilmSuggestion(3, "Test Film 3", "Филипп Нолан"));
+        assertThat(searchIndex.suggest("  нол", 10))
+                .containsExactly(new FilmSuggestion(3, "Test Film 3", "Филипп Нолан"));
+        assertThat(searchIndex.suggest("film", 2)).extracting(FilmSuggestion::getId).containsExactly(1, 3);
+        assertThat(searchIndex.suggest("ilm", 10)).isEmpty();
+        assertThat(searchIndex.suggest(" ", 10)).isEmpty();
+
+        searchIndex.onDirectorDeleted(1);
+        assertThat(searchIndex.suggest("нол", 10)).isEmpty();
+        assertThat(searchIndex.suggest("test film 3", 10))
+                .containsExactly(new FilmSuggestion(3, "Test Film 3", null));
+
+        searchIndex.onFilmDeleted(1);
+        assertThat(searchIndex.suggest("te", 10)).extracting(FilmSuggestion::getId).containsExactly(3, 2);
+    }
+
+    @Test
+    void testMatchQuality() {
+        assertThat(FilmSearchIndex.quality("test film", "test film")).isEqualTo(1);
+        assertThat(FilmSearchIndex.quality("test film", "tes")).isEqualTo(0.75);
+        assertThat(FilmSearchIndex.quality("test film", "fil")).isEqualTo(0.5);
+        assertThat(FilmSearchIndex.quality("test film", "ilm")).isEqualTo(0.25);
+        assertThat(FilmSearchIndex.quality("test film", "xyz")).isZero();
+    }
+
+    private List<Integer> ids(List<FilmSearchIndex.Match> matches) {
+        return matches.stream().map(FilmSearchIndex.Match::filmId).toList();
+    }
+
+    private List<Integer> sqlIds(String query, Set<SearchBy> by) {
+        return filmStorage.searchFilm(query, by).stream().map(Film::getId).toList();
+    }
+}
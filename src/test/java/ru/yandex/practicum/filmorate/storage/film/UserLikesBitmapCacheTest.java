@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmDbStorage.class, FilmRowMapper.class, GenreDbStorage.class, MpaDbStorage.class, UserLikesBitmapCache.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class UserLikesBitmapCacheTest {
+
+    private final FilmDbStorage filmStorage;
+    private final UserLikesBitmapCache likesCache;
+    private final JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        likesCache.invalidateAll();
+    }
+
+    @Test
+    void testCommonFilmsMatchDatabase() {
+        assertThat(likesCache.commonFilms(1, 2))
+                .containsExactly(1)
+                .containsExactly(filmStorage.getCommonFilms(1, 2).stream().mapToInt(Film::getId).toArray());
+        assertThat(likesCache.commonFilms(1, 3)).isEmpty();
+    }
+
+    @Test
+    void testLikeEventsUpdateCachedUsers() {
+        likesCache.commonFilms(1, 2);
+
+        filmStorage.addLike(2, 2);
+        likesCache.onLikeChanged(2, 2, true);
+        assertThat(likesCache.commonFilms(1, 2)).containsExactly(1, 2);
+
+        filmStorage.removeLike(1, 1);
+        likesCache.onLikeChanged(1, 1, false);
+        assertThat(likesCache.commonFilms(1, 2)).containsExactly(2);
+
+        likesCache.onFilmDeleted(2);
+        assertThat(likesCache.commonFilms(1, 2)).isEmpty();
+
+        likesCache.onUserDeleted(2);
+        assertThat(likesCache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void testLikeChangedDuringLoadIsNotLost() {
+        UserLikesBitmapCache[] cache = new UserLikesBitmapCache[1];
+        JdbcTemplate jdbc = new JdbcTemplate(jdbcTemplate.getDataSource()) {
+            private boolean changed;
+
+            @Override
+            public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+                List<T> result = super.queryForList(sql, elementType, args);
+                // Лайк фиксируется после того, как лайки пользователя 2 прочитаны, но до попадания в кэш
+                if (!changed && Integer.valueOf(2).equals(args[0])) {
+                    changed = true;
+                    filmStorage.addLike(2, 2);
+                    cache[0].onLikeChanged(2, 2, true);
+                }
+                return result;
+            }
+        };
+        cache[0] = new UserLikesBitmapCache(jdbc, 100);
+
+        assertThat(cache[0].commonFilms(1, 2)).containsExactly(1);
+        assertThat(cache[0].commonFilms(1, 2)).containsExactly(1, 2);
+    }
+
+    @Test
+    void testBitmapSwitchesBetweenArrayAndBitmapContainers() {
+        int[] heavy = IntStream.range(1, 10_001).toArray();
+        int[] sparse = {5, 4_097, 9_999, 70_000, 140_000};
+        FilmIdBitmap heavyBitmap = FilmIdBitmap.of(heavy).with(70_000).with(140_000);
+        FilmIdBitmap sparseBitmap = FilmIdBitmap.of(sparse);
+
+        assertThat(heavyBitmap.cardinality()).isEqualTo(10_002);
+        assertThat(heavyBitmap.and(sparseBitmap)).containsExactly(sparse);
+        assertThat(sparseBitmap.and(heavyBitmap)).containsExactly(sparse);
+        assertThat(heavyBitmap.and(FilmIdBitmap.of(IntStream.range(5_000, 20_000).toArray())))
+                .containsExactly(IntStream.range(5_000, 10_001).toArray());
+
+        FilmIdBitmap shrunk = heavyBitmap;
+        for (int id = 1; id <= 6_000; id++) {
+            shrunk = shrunk.without(id);
+        }
+        assertThat(shrunk.cardinality()).isEqualTo(4_002);
+        assertThat(shrunk.contains(6_000)).isFalse();
+        assertThat(shrunk.contains(6_001)).isTrue();
+        assertThat(Arrays.stream(shrunk.and(heavyBitmap)).min().orElseThrow()).isEqualTo(6_001);
+        assertThat(shrunk.with(6_001)).isSameAs(shrunk);
+        assertThat(FilmIdBitmap.EMPTY.without(1)).isSameAs(FilmIdBitmap.EMPTY);
+    }
+}
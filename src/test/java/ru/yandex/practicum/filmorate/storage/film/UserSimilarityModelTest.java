@@ -0,0 +1,176 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.UserSimilarityModel.Neighbours;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmDbStorage.class, FilmRowMapper.class, GenreDbStorage.class, MpaDbStorage.class, UserSimilarityModel.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class UserSimilarityModelTest {
+
+    private final FilmDbStorage filmStorage;
+    private final UserSimilarityModel similarityModel;
+    private final JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        similarityModel.rebuild();
+    }
+
+    @Test
+    void testRecommendMatchesSqlForSingleNeighbour() {
+        assertThat(similarityModel.recommend(2))
+                .containsExactly(2)
+                .isEqualTo(filmStorage.getRecommendations(2).stream().map(Film::getId).toList());
+        assertThat(similarityModel.recommend(1)).isEmpty();
+        assertThat(similarityModel.recommend(3)).isEmpty();
+    }
+
+    @Test
+    void testLikeMarksOnlyLikingUserStale() {
+        filmStorage.addLike(1, 3);
+        similarityModel.onLikeChanged(1, 3, true);
+
+        // Остальные лайкнувшие фильм 1 не помечаются: их соседи пересчитываются лениво
+        assertThat(similarityModel.staleUsers()).isEqualTo(1);
+        assertThat(similarityModel.recommend(3)).containsExactly(2);
+        assertThat(similarityModel.staleUsers()).isZero();
+
+        filmStorage.addLike(2, 2);
+        similarityModel.onLikeChanged(2, 2, true);
+        similarityModel.refreshStale();
+        assertThat(similarityModel.staleUsers()).isZero();
+        assertThat(similarityModel.stalenessMillis()).isZero();
+    }
+
+    @Test
+    void testNeighboursOutdatedOnlyByLikesOfOwnFilms() {
+        UserSimilarityModel model = new UserSimilarityModel(jdbcTemplate, 10, Duration.ZERO, 1);
+        try {
+            model.rebuild();
+            model.recommend(2);
+            Neighbours computed = model.neighboursOf(2);
+
+            // Фильм 3 пользователь 2 не лайкал: число его общих лайков ни с кем не изменилось
+            filmStorage.addLike(3, 3);
+            model.onLikeChanged(3, 3, true);
+            model.recommend(2);
+            assertThat(model.neighboursOf(2)).isSameAs(computed);
+
+            filmStorage.addLike(1, 3);
+            model.onLikeChanged(1, 3, true);
+            model.recommend(2);
+            assertThat(model.neighboursOf(2).userIds()).containsExactly(1, 3);
+        } finally {
+            model.shutdown();
+        }
+    }
+
+    @Test
+    void testFilmsRankedBySimilarityOfNeighbours() {
+        // Фильм 2 лайкнули оба соседа пользователя 3, фильм 3 — только один
+        filmStorage.addLike(1, 3);
+        similarityModel.onLikeChanged(1, 3, true);
+        filmStorage.addLike(2, 2);
+        similarityModel.onLikeChanged(2, 2, true);
+        filmStorage.addLike(3, 2);
+        similarityModel.onLikeChanged(3, 2, true);
+
+        assertThat(similarityModel.recommend(3)).containsExactly(2, 3);
+        assertThat(similarityModel.likes()).isEqualTo(6);
+    }
+
+    @Test
+    void testUserAndFilmDeletion() {
+        similarityModel.onUserDeleted(1);
+        assertThat(similarityModel.recommend(2)).isEmpty();
+        assertThat(similarityModel.users()).isEqualTo(1);
+
+        similarityModel.rebuild();
+        similarityModel.onFilmDeleted(2);
+        assertThat(similarityModel.recommend(2)).isEmpty();
+        assertThat(similarityModel.likes()).isEqualTo(2);
+    }
+
+    @Test
+    void testRebuildMatchesIncrementalComputation() {
+        filmStorage.addLike(1, 3);
+        filmStorage.addLike(3, 2);
+        similarityModel.rebuild();
+
+        for (int userId = 1; userId <= 3; userId++) {
+            Neighbours rebuilt = similarityModel.neighboursOf(userId);
+            Neighbours computed = similarityModel.computeNeighbours(userId);
+            assertThat(rebuilt.userIds()).isEqualTo(computed.userIds());
+            assertThat(rebuilt.commonLikes()).isEqualTo(computed.commonLikes());
+        }
+    }
+
+    @Test
+    void testParallelRecomputeMatchesBruteForce() {
+        Random random = new Random(7);
+        Map<Integer, TreeSet<Integer>> likes = new HashMap<>();
+        for (int userId = 1; userId <= 2000; userId++) {
+            TreeSet<Integer> films = new TreeSet<>();
+            for (int i = 0; i < 1 + random.nextInt(15); i++) {
+                films.add(1 + random.nextInt(300));
+            }
+            likes.put(userId, films);
+        }
+        Map<Integer, int[]> likesByUser = new HashMap<>();
+        Map<Integer, List<Integer>> likers = new HashMap<>();
+        likes.forEach((userId, films) -> {
+            likesByUser.put(userId, films.stream().mapToInt(Integer::intValue).toArray());
+            films.forEach(filmId -> likers.computeIfAbsent(filmId, key -> new ArrayList<>()).add(userId));
+        });
+        Map<Integer, int[]> likersByFilm = new HashMap<>();
+        likers.forEach((filmId, users) -> likersByFilm.put(filmId,
+                users.stream().mapToInt(Integer::intValue).sorted().toArray()));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Map<Integer, Neighbours> computed = new NeighboursRecompute(likesByUser, likersByFilm, 5).compute(pool);
+
+            for (int userId = 1; userId <= 2000; userId++) {
+                int user = userId;
+                List<int[]> expected = new ArrayList<>();
+                likes.forEach((otherId, films) -> {
+                    long common = films.stream().filter(likes.get(user)::contains).count();
+                    if (otherId != user && common > 0) {
+                        expected.add(new int[]{otherId, (int) common});
+                    }
+                });
+                expected.sort((a, b) -> a[1] != b[1] ? Integer.compare(b[1], a[1]) : Integer.compare(a[0], b[0]));
+                List<int[]> top = expected.subList(0, Math.min(5, expected.size()));
+
+                Neighbours neighbours = computed.get(userId);
+                assertThat(neighbours.userIds()).isEqualTo(top.stream().mapToInt(pair -> pair[0]).toArray());
+                assertThat(neighbours.commonLikes()).isEqualTo(top.stream().mapToInt(pair -> pair[1]).toArray());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
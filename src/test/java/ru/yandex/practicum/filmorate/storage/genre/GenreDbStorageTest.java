@@ -1,9 +1,11 @@
 package ru.yandex.practicum.filmorate.storage.genre;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Genre;
@@ -21,6 +23,14 @@ class GenreDbStorageTest {
     @Autowired
     private GenreDbStorage genreDbStorage;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        genreDbStorage.invalidate();
+    }
+
     @Test
     void findAll_shouldReturnAllGenres() {
         List<Genre> genres = genreDbStorage.findAll();
@@ -47,6 +57,41 @@ class GenreDbStorageTest {
                 .hasMessageContaining("Жанр с id 999 не найден");
     }
 
+    @Test
+    void findById_shouldReturnCachedGenreUntilInvalidated() {
+        Genre genre = genreDbStorage.findById(1);
+        jdbcTemplate.update("UPDATE genres SET name = 'Сатира' WHERE genre_id = 1");
+
+        assertThat(genreDbStorage.findById(1)).isSameAs(genre);
+        assertThat(genreDbStorage.findAll().getFirst()).isSameAs(genre);
+
+        genreDbStorage.invalidate();
+        assertThat(genreDbStorage.findById(1).getName()).isEqualTo("Сатира");
+    }
+
+    @Test
+    void findById_shouldNotReloadGenres_untilInvalidated() {
+        jdbcTemplate.update("INSERT INTO genres (genre_id, name) VALUES (7, 'Вестерн')");
+
+        assertThatThrownBy(() -> genreDbStorage.findById(7))
+                .isInstanceOf(NotFoundException.class);
+        assertThat(genreDbStorage.findAll()).hasSize(6);
+
+        genreDbStorage.invalidate();
+        assertThat(genreDbStorage.findById(7).getName()).isEqualTo("Вестерн");
+        assertThat(genreDbStorage.findAll()).hasSize(7);
+    }
+
+    @Test
+    void findReferencedById_shouldReloadGenres_whenGenreIsMissingInMemory() {
+        jdbcTemplate.update("INSERT INTO genres (genre_id, name) VALUES (7, 'Вестерн')");
+
+        assertThat(genreDbStorage.findReferencedById(7).getName()).isEqualTo("Вестерн");
+        assertThat(genreDbStorage.findById(7).getName()).isEqualTo("Вестерн");
+        assertThatThrownBy(() -> genreDbStorage.findReferencedById(999))
+                .isInstanceOf(NotFoundException.class);
+    }
+
     @Test
     void findAll_shouldReturnGenresOrderedById() {
         List<Genre> genres = genreDbStorage.findAll();
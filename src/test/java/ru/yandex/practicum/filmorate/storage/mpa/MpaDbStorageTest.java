@@ -1,9 +1,11 @@
 package ru.yandex.practicum.filmorate.storage.mpa;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Mpa;
@@ -21,6 +23,14 @@ public class MpaDbStorageTest {
     @Autowired
     private MpaDbStorage mpaDbStorage;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        mpaDbStorage.invalidate();
+    }
+
     @Test
     void findAll_shouldReturnAllMpaRatings() {
         List<Mpa> mpaList = mpaDbStorage.findAll();
@@ -47,6 +57,29 @@ public class MpaDbStorageTest {
                 .hasMessageContaining("Рейтинг MPA с id 999 не найден");
     }
 
+    @Test
+    void findById_shouldReturnCachedMpaUntilInvalidated() {
+        Mpa mpa = mpaDbStorage.findById(5);
+        jdbcTemplate.update("UPDATE mpa_rating SET name = 'NC17' WHERE mpa_id = 5");
+
+        assertThat(mpaDbStorage.findById(5)).isSameAs(mpa);
+
+        mpaDbStorage.invalidate();
+        assertThat(mpaDbStorage.findById(5).getName()).isEqualTo("NC17");
+    }
+
+    @Test
+    void findReferencedById_shouldReloadRatings_whenMpaIsMissingInMemory() {
+        jdbcTemplate.update("INSERT INTO mpa_rating (mpa_id, name) VALUES (6, 'X')");
+
+        assertThatThrownBy(() -> mpaDbStorage.findById(6))
+                .isInstanceOf(NotFoundException.class);
+        assertThat(mpaDbStorage.findReferencedById(6).getName()).isEqualTo("X");
+        assertThat(mpaDbStorage.findById(6).getName()).isEqualTo("X");
+        assertThatThrownBy(() -> mpaDbStorage.findReferencedById(999))
+                .isInstanceOf(NotFoundException.class);
+    }
+
     @Test
     void findAll_shouldReturnMpaOrderedById() {
         List<Mpa> mpaList = mpaDbStorage.findAll();
@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.storage.review;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({ReviewDbStorage.class, UserDbStorage.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class ReviewDbStorageTest {
+
+    private final ReviewDbStorage reviewStorage;
+    private final UserDbStorage userStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testRatingsAdjustUsefulByExactDeltas() {
+        reviewStorage.addLike(1, 2);
+        reviewStorage.addLike(1, 3);
+        assertUseful(1, 2);
+
+        reviewStorage.addLike(1, 2);
+        assertUseful(1, 2);
+
+        reviewStorage.addDislike(1, 2);
+        assertUseful(1, 0);
+
+        reviewStorage.removeLike(1, 2);
+        assertUseful(1, 0);
+
+        reviewStorage.removeDislike(1, 2);
+        reviewStorage.removeLike(1, 3);
+        assertUseful(1, 0);
+        assertThat(reviewStorage.reconcileUseful()).isZero();
+    }
+
+    @Test
+    void testRatingsOfMissingReview() {
+        assertThatThrownBy(() -> reviewStorage.addLike(999, 1))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessageContaining("Отзыв с id 999 не найден");
+        assertThatThrownBy(() -> reviewStorage.removeDislike(999, 1))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void testFindByFilmIdOrdersByUseful() {
+        reviewStorage.addDislike(1, 3);
+        reviewStorage.addLike(2, 3);
+        reviewStorage.addLike(3, 1);
+        reviewStorage.addLike(3, 2);
+
+        assertThat(reviewStorage.findByFilmId(1, 10))
+                .extracting(Review::getReviewId, Review::getUseful)
+                .containsExactly(tuple(2, 1), tuple(1, -1));
+        assertThat(reviewStorage.findByFilmId(null, 2)).extracting(Review::getReviewId).containsExactly(3, 2);
+        assertThat(reviewStorage.findAll()).extracting(Review::getReviewId).containsExactly(3, 2, 1);
+    }
+
+    @Test
+    void testUserDeletionRevertsRatings() {
+        reviewStorage.addLike(3, 1);
+        reviewStorage.addDislike(3, 2);
+        reviewStorage.addDislike(1, 2);
+
+        userStorage.delete(2);
+
+        assertUseful(3, 1);
+        assertUseful(1, 0);
+        assertThat(reviewStorage.reconcileUseful()).isZero();
+    }
+
+    @Test
+    void testReconcileUseful() {
+        reviewStorage.addLike(3, 1);
+        jdbcTemplate.update("UPDATE reviews SET useful = 42 WHERE review_id IN (2, 3)");
+
+        assertThat(reviewStorage.reconcileUseful()).isEqualTo(2);
+        assertUseful(2, 0);
+        assertUseful(3, 1);
+        assertThat(reviewStorage.existsAll(List.of(1, 2, 3))).isTrue();
+        assertThat(reviewStorage.existsAll(List.of(1, 999))).isFalse();
+    }
+
+    private void assertUseful(int reviewId, int expected) {
+        assertThat(reviewStorage.findById(reviewId).getUseful()).isEqualTo(expected);
+    }
+}
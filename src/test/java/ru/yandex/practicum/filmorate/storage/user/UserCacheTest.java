@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.FriendshipStatus;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({UserDbStorage.class, UserCache.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class UserCacheTest {
+
+    private final UserDbStorage userStorage;
+    private final UserCache userCache;
+
+    @BeforeEach
+    void setUp() {
+        userCache.invalidateAll();
+    }
+
+    @Test
+    void testGetMatchesDatabase() {
+        User user = userCache.get(1);
+
+        assertThat(user).isEqualTo(userStorage.findById(1)).isNotSameAs(userCache.get(1));
+        assertThat(user.getFriendshipStatus(2)).isEqualTo(FriendshipStatus.CONFIRMED);
+        assertThat(user.getFriendshipStatus(3)).isEqualTo(FriendshipStatus.UNCONFIRMED);
+        assertThat(userCache.friendIds(1)).containsExactly(2, 3);
+        assertThat(userCache.exists(1)).isTrue();
+        assertThat(userCache.exists(999)).isFalse();
+        assertThatThrownBy(() -> userCache.get(999))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessageContaining("Пользователь с id 999 не найден");
+    }
+
+    @Test
+    void testGetAllSkipsMissingUsers() {
+        assertThat(userCache.getAll(List.of(3, 999, 1)))
+                .extracting(User::getId)
+                .containsExactly(1, 3);
+        assertThat(userCache.getAll(List.of(1, 2, 3))).isEqualTo(userStorage.findAllByIds(List.of(1, 2, 3)));
+    }
+
+    @Test
+    void testFriendChangesInvalidateUsers() {
+        assertThat(userCache.commonFriends(1, 2)).isEmpty();
+
+        userStorage.addFriend(2, 3);
+        assertThat(userCache.commonFriends(1, 2)).isEmpty();
+
+        userCache.invalidate(2, 3);
+        assertThat(userCache.commonFriends(1, 2))
+                .extracting(User::getId)
+                .containsExactly(3);
+
+        User user = userCache.get(1);
+        user.setName("Новое имя");
+        userStorage.update(user);
+        assertThat(userCache.get(1).getName()).isEqualTo("User One");
+        userCache.invalidate(1);
+        assertThat(userCache.get(1).getName()).isEqualTo("Новое имя");
+    }
+
+    @Test
+    void testUserDeletionRemovesFriendEntries() {
+        assertThat(userCache.friendIds(1)).containsExactly(2, 3);
+
+        userStorage.delete(3);
+        userCache.onUserDeleted(3);
+
+        assertThat(userCache.friendIds(1)).containsExactly(2);
+        assertThat(userCache.exists(3)).isFalse();
+    }
+}
@@ -43,6 +43,15 @@ public class UserDbStorageTest {
                 .hasMessageContaining("Пользователь с id 999 не найден");
     }
 
+    @Test
+    void testExists() {
+        assertThat(userStorage.exists(1)).isTrue();
+        assertThat(userStorage.exists(999)).isFalse();
+        assertThat(userStorage.existsAll(List.of(1, 2, 3, 1))).isTrue();
+        assertThat(userStorage.existsAll(List.of(1, 999))).isFalse();
+        assertThat(userStorage.existsAll(List.of())).isTrue();
+    }
+
     @Test
     void testFindAllUsers() {
         List<User> users = userStorage.findAll();
@@ -54,6 +63,47 @@ public class UserDbStorageTest {
                 .contains("user1@mail.ru", "user2@mail.ru", "user3@mail.ru");
     }
 
+    @Test
+    void testFindAllUsers_LoadsFriends() {
+        List<User> users = userStorage.findAll();
+
+        assertThat(users)
+                .filteredOn(user -> user.getId() == 1)
+                .singleElement()
+                .satisfies(user -> assertThat(user.getFriends())
+                        .containsEntry(2, FriendshipStatus.CONFIRMED)
+                        .containsEntry(3, FriendshipStatus.UNCONFIRMED));
+        assertThat(users)
+                .filteredOn(user -> user.getId() == 3)
+                .singleElement()
+                .satisfies(user -> assertThat(user.getFriends()).isEmpty());
+    }
+
+    @Test
+    void testFindAllUsers_Page() {
+        List<User> firstPage = userStorage.findAll(null, 2);
+        List<User> secondPage = userStorage.findAll(firstPage.getLast().getId(), 2);
+
+        assertThat(firstPage)
+                .extracting(User::getId)
+                .containsExactly(1, 2);
+        assertThat(firstPage.getFirst().getFriends()).containsKeys(2, 3);
+        assertThat(secondPage)
+                .extracting(User::getId)
+                .containsExactly(3);
+    }
+
+    @Test
+    void testFindAllByIds() {
+        List<User> users = userStorage.findAllByIds(List.of(3, 1, 999));
+
+        assertThat(users)
+                .extracting(User::getId)
+                .containsExactly(1, 3);
+        assertThat(users.getFirst().getFriends()).containsKeys(2, 3);
+        assertThat(userStorage.findAllByIds(List.of())).isEmpty();
+    }
+
     @Test
     void testCreateUser() {
         User newUser = new User();
@@ -154,6 +204,12 @@ public class UserDbStorageTest {
                 .isInstanceOf(NotFoundException.class);
     }
 
+    @Test
+    void testDeleteUserReturnsLikedFilms() {
+        assertThat(userStorage.delete(1)).containsExactlyInAnyOrder(1, 2);
+        assertThat(userStorage.delete(3)).isEmpty();
+    }
+
     @Test
     void testDeleteUser_UserNotFound() {
         assertThatThrownBy(() -> userStorage.delete(999))
@@ -62,6 +62,10 @@ VALUES (1, 2);
 INSERT INTO film_likes (film_id, user_id)
 VALUES (2, 1);
 
+-- Счётчики лайков фильмов
+UPDATE films f
+SET likes_count = (SELECT COUNT(*) FROM film_likes l WHERE l.film_id = f.film_id);
+
 -- Дружба между пользователями
 INSERT INTO friendship (user_id, friend_id, status)
 VALUES (1, 2, 'CONFIRMED');